@@ -0,0 +1,65 @@
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// ===========================
+// BACKGROUND WORK (off the EDT)
+// ===========================
+// Service calls (file I/O, journal fsyncs, fleet scans) run on virtual
+// threads; only their results are posted back to the Swing event thread.
+class Background {
+    private static final ExecutorService POOL = Executors.newVirtualThreadPerTaskExecutor();
+
+    interface Work<T> {
+        T call() throws Exception;
+    }
+
+    // Runs work off the EDT, then hands the result to onEdt on the EDT
+    static <T> void run(Work<T> work, Consumer<? super T> onEdt) {
+        run(work, onEdt, Background::report);
+    }
+
+    static <T> void run(Work<T> work, Consumer<? super T> onEdt, Consumer<Throwable> onError) {
+        POOL.execute(() -> {
+            try {
+                T result = work.call();
+                SwingUtilities.invokeLater(() -> onEdt.accept(result));
+            } catch (Throwable t) {
+                SwingUtilities.invokeLater(() -> onError.accept(t));
+            }
+        });
+    }
+
+    // Default for work without its own error handler: log it and tell the user
+    private static void report(Throwable t) {
+        System.err.println("Background task failed: " + t);
+        JOptionPane.showMessageDialog(null, "That didn't go through: " + t.getMessage(), "Error",
+                JOptionPane.ERROR_MESSAGE);
+    }
+
+    // Logs every event that keeps the EDT busy longer than thresholdMs,
+    // e.g. -Drental.edt.stallMs=100. Installs a timing event queue.
+    static void watchEdt(long thresholdMs) {
+        long thresholdNanos = thresholdMs * 1_000_000L;
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new EventQueue() {
+            @Override
+            protected void dispatchEvent(AWTEvent event) {
+                long start = System.nanoTime();
+                try {
+                    super.dispatchEvent(event);
+                } finally {
+                    long took = System.nanoTime() - start;
+                    if (took > thresholdNanos) {
+                        System.err.printf("EDT stall: %d ms in %s from %s%n", took / 1_000_000,
+                                event.getClass().getSimpleName(), event.getSource().getClass().getName());
+                    }
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,254 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// ===========================
+// BOOKING STRESS TEST
+// ===========================
+// Many threads race to rent and return the same few cars, and every win is
+// checked against an independent record of who holds each car. Two winners
+// for one car at once, a return that doesn't match the winner, or a fleet
+// whose availability index disagrees with the cars afterwards is a failure,
+// and the process exits 1.
+//
+//   java BookingStressTest [--threads N] [--cars N] [--attempts N] [--service-attempts N]
+//                          [--searches N]
+//     --threads N           racing threads (default 16)
+//     --cars N              cars they share (default 200)
+//     --attempts N          rent/return attempts per thread on Car itself (default 200000)
+//     --service-attempts N  attempts per thread through RentalService (default 5000)
+//     --searches N          searches per thread while prices change (default 2000)
+//
+// The second phase goes through RentalService.rentCar/returnCar, so the fleet
+// indexes, journal and ledger are under the same race. Its data goes to a
+// fresh temp directory with fsync off, in two branches.
+//
+// The last phase runs price-sorted searches across both branches while one
+// thread keeps renting, returning and repricing. Every page must be exactly
+// the cheapest (or dearest) cars under the one book it names.
+class BookingStressTest {
+    private static int threads = 16, cars = 200, attempts = 200_000, serviceAttempts = 5_000, searches = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--cars": cars = Integer.parseInt(args[++i]); break;
+                case "--attempts": attempts = Integer.parseInt(args[++i]); break;
+                case "--service-attempts": serviceAttempts = Integer.parseInt(args[++i]); break;
+                case "--searches": searches = Integer.parseInt(args[++i]); break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        isolateServiceFiles();
+        boolean ok = carPhase() & servicePhase() & searchPhase();
+        System.out.println(ok ? "PASS: no double bookings, every search page on one price book" : "FAIL");
+        System.exit(ok ? 0 : 1); // journal and pricing threads would keep the JVM up
+    }
+
+    // ---- phase 1: Car's compare-and-set alone ----
+
+    private static boolean carPhase() throws InterruptedException {
+        Car[] fleet = new Car[cars];
+        for (int i = 0; i < cars; i++) fleet[i] = Car.create("Stress", "Car", 50);
+        AtomicReferenceArray<String> holder = new AtomicReferenceArray<>(cars); // set by each winner
+        LongAdder rents = new LongAdder(), conflicts = new LongAdder(), violations = new LongAdder();
+        long start = System.nanoTime();
+        race(t -> {
+            String me = "U" + t;
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            for (int n = 0; n < attempts; n++) {
+                int i = rnd.nextInt(cars);
+                Car car = fleet[i];
+                if (car.rent(me, 0, 50) < 0) {
+                    conflicts.increment();
+                    continue;
+                }
+                rents.increment();
+                if (!holder.compareAndSet(i, null, me)) violations.increment(); // someone else also won it
+                if (rnd.nextInt(4) == 0) Thread.yield(); // hold it a moment
+                if (!holder.compareAndSet(i, me, null)) violations.increment();
+                if (car.returnCar(me) == null) violations.increment();
+            }
+        });
+        for (Car car : fleet) {
+            if (!car.isAvailable()) violations.increment();
+        }
+        return report("car", start, rents.sum() + " rents, " + conflicts.sum() + " conflicts", violations.sum());
+    }
+
+    // ---- phase 2: through RentalService ----
+
+    private static boolean servicePhase() throws InterruptedException {
+        RentalService.ready();
+        List<Car> fleet = new ArrayList<>(cars);
+        for (int i = 0; i < cars; i++) fleet.add(Car.create("Stress", "Service", 50));
+        RentalService.importFinished(RentalService.importCars(fleet, c -> { }));
+        int base = RentalService.branches.availableCount();
+        String[] users = new String[threads];
+        for (int t = 0; t < threads; t++) {
+            Customer c = new Customer("Stress " + t, "x", "555", "stress" + t + "@example.com");
+            RentalService.addCustomer(c);
+            users[t] = c.getId();
+        }
+
+        AtomicReferenceArray<String> holder = new AtomicReferenceArray<>(cars);
+        LongAdder rents = new LongAdder(), conflicts = new LongAdder(), violations = new LongAdder();
+        long start = System.nanoTime();
+        race(t -> {
+            String me = users[t];
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            for (int n = 0; n < serviceAttempts; n++) {
+                int i = rnd.nextInt(cars);
+                String carId = fleet.get(i).getCarId();
+                if (RentalService.rentCar(carId, me) != BookingResult.OK) {
+                    conflicts.increment();
+                    continue;
+                }
+                rents.increment();
+                if (!holder.compareAndSet(i, null, me)) violations.increment();
+                if (!holder.compareAndSet(i, me, null)) violations.increment();
+                if (RentalService.returnCar(carId, me) != BookingResult.OK) violations.increment();
+            }
+        });
+        // Every car is back, and the fleet's indexes agree
+        for (Car car : fleet) {
+            if (!car.isAvailable()) violations.increment();
+        }
+        if (RentalService.branches.availableCount() != base) violations.increment();
+        for (String u : users) {
+            if (!RentalService.branches.rentalsOf(u).isEmpty()) violations.increment();
+        }
+        return report("service", start, rents.sum() + " rents, " + conflicts.sum() + " conflicts", violations.sum());
+    }
+
+    // ---- phase 3: searches while prices change ----
+
+    private static boolean searchPhase() throws InterruptedException {
+        // Brands rented at different rates get different utilization factors,
+        // so each pass reorders them
+        Branch airport = RentalService.branches.named("Airport");
+        String[] brands = {"Alpha", "Beta", "Gamma", "Delta"};
+        List<Car> fleet = new ArrayList<>(cars);
+        for (int i = 0; i < cars; i++) {
+            Branch b = i % 2 == 0 ? RentalService.branches.main() : airport;
+            fleet.add(RentalService.addCar(brands[i % brands.length], "Search", 40 + i % 7, b));
+        }
+        Customer renter = new Customer("Stress repricer", "x", "555", "repricer@example.com");
+        RentalService.addCustomer(renter);
+
+        LongAdder pages = new LongAdder(), violations = new LongAdder();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread repricer = new Thread(() -> {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            while (!done.get()) {
+                Car car = fleet.get(rnd.nextInt(fleet.size()));
+                if (RentalService.rentCar(car.getCarId(), renter.getId()) == BookingResult.OK
+                        && rnd.nextInt(brands.length) != 0) { // returns lag, so rented shares drift apart
+                    RentalService.returnCar(car.getCarId(), renter.getId());
+                }
+                RentalService.pricing.reprice();
+            }
+        }, "stress-repricer");
+        long start = System.nanoTime();
+        repricer.start();
+        race(t -> {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            for (int n = 0; n < searches; n++) {
+                FleetSearch.Query q = new FleetSearch.Query();
+                q.text = "Search";
+                q.sort = rnd.nextBoolean() ? FleetSearch.Sort.PRICE_ASC : FleetSearch.Sort.PRICE_DESC;
+                q.offset = rnd.nextInt(cars / 2);
+                q.limit = 1 + rnd.nextInt(20);
+                FleetSearch.Page page;
+                try {
+                    page = RentalService.branches.search(q);
+                } catch (RuntimeException e) { // e.g. a comparator broken by a price change mid-sort
+                    System.err.println("search failed: " + e);
+                    violations.increment();
+                    continue;
+                }
+                pages.increment();
+                if (!prices(page.cars, page.book).equals(prices(expectedPage(fleet, page.book, q), page.book))) {
+                    violations.increment();
+                }
+            }
+        });
+        done.set(true);
+        repricer.join();
+        return report("search", start, pages.sum() + " pages", violations.sum());
+    }
+
+    // The page q should get when every car is priced from book (up to the order of ties)
+    private static List<Car> expectedPage(List<Car> fleet, PriceBook book, FleetSearch.Query q) {
+        List<Car> all = new ArrayList<>(fleet);
+        Comparator<Car> byPrice = Comparator.comparingDouble(book::priceOf);
+        all.sort(q.sort == FleetSearch.Sort.PRICE_ASC ? byPrice : byPrice.reversed());
+        return all.subList(Math.min(all.size(), q.offset), Math.min(all.size(), q.offset + q.limit));
+    }
+
+    private static List<Double> prices(List<Car> cars, PriceBook book) {
+        List<Double> out = new ArrayList<>(cars.size());
+        for (Car c : cars) out.add(book.priceOf(c));
+        return out;
+    }
+
+    // ---- helpers ----
+
+    private interface Racer {
+        void run(int thread);
+    }
+
+    // Starts every thread on the same signal and waits for all of them
+    private static void race(Racer racer) throws InterruptedException {
+        Thread[] all = new Thread[threads];
+        Object gate = new Object();
+        boolean[] open = new boolean[1];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            all[t] = new Thread(() -> {
+                synchronized (gate) {
+                    while (!open[0]) {
+                        try {
+                            gate.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+                racer.run(id);
+            }, "stress-" + t);
+            all[t].start();
+        }
+        synchronized (gate) {
+            open[0] = true;
+            gate.notifyAll();
+        }
+        for (Thread t : all) t.join();
+    }
+
+    private static boolean report(String phase, long start, String counts, long violations) {
+        System.out.printf(Locale.ROOT, "%-8s %d threads, %d cars: %s, %d violations (%.1f s)%n",
+                phase, threads, cars, counts, violations, (System.nanoTime() - start) / 1e9);
+        return violations == 0;
+    }
+
+    private static void isolateServiceFiles() throws IOException {
+        Path dir = Files.createTempDirectory("rental-stress");
+        System.setProperty("rental.journal.dir", dir.resolve("journal").toString());
+        System.setProperty("rental.customers", dir.resolve("customers.txt").toString());
+        System.setProperty("rental.journal.fsync", "never");
+        System.setProperty("rental.pricing.intervalMinutes", "0"); // phase 3 reprices by hand
+        System.setProperty("rental.branches", "Main,Airport");
+    }
+}
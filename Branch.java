@@ -0,0 +1,220 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+// ===========================
+// BRANCHES (shards)
+// ===========================
+// One rental location. A branch owns its cars and everything indexed by
+// fleet slot: the availability bits, the reservation day bits and the search
+// index. Bookings on different branches therefore never touch the same
+// index, lock or cache line. Customers, the journal and the ledger stay shared.
+class Branch {
+    final String name;
+    final FleetStore fleet = new FleetStore();
+    final ReservationBook reservations = new ReservationBook();
+    final FleetSearch search = new FleetSearch(fleet, reservations);
+
+    Branch(String name) {
+        this.name = name;
+    }
+
+    // Cars that can be reserved for [from, to) here (see RentalService.availableBetween)
+    List<Car> availableBetween(long from, long to, boolean freeNow) {
+        return fleet.allExcept(reservations.bookedSlots(from, to, fleet.slotCount()), freeNow);
+    }
+
+    @Override
+    public String toString() { return name; }
+}
+
+// Sends single-car operations to the branch holding the car (by car id) and
+// fans queries over every branch out on a fork/join pool, merging the results
+// in branch order. With one branch everything runs inline.
+//
+// Branches come from -Drental.branches=Main,Airport,...; the first is the
+// default for cars added without one and for data from before branches.
+class BranchRouter implements Iterable<Car> {
+    private volatile Branch[] branches;
+    private final ConcurrentHashMap<String, Branch> byName = new ConcurrentHashMap<>(); // case-folded
+    private final ConcurrentHashMap<String, Car> byCarId = new ConcurrentHashMap<>();
+    private final ForkJoinPool pool;
+
+    BranchRouter(String... names) {
+        branches = new Branch[0];
+        for (String n : names) branch(n);
+        if (branches.length == 0) branch("Main");
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    static BranchRouter fromSystemProperties() {
+        return new BranchRouter(Arrays.stream(System.getProperty("rental.branches", "Main").split(","))
+                .map(String::trim).filter(s -> !s.isEmpty()).toArray(String[]::new));
+    }
+
+    // ---- branches ----
+
+    Branch main() { return branches[0]; }
+
+    List<Branch> branches() { return Collections.unmodifiableList(Arrays.asList(branches)); }
+
+    Branch named(String name) {
+        return name == null ? null : byName.get(name.trim().toLowerCase(Locale.ROOT));
+    }
+
+    // Finds or opens a branch; used for configured names and names found in saved data
+    synchronized Branch branch(String name) {
+        Branch b = named(name);
+        if (b != null) return b;
+        b = new Branch(name.trim());
+        Branch[] grown = Arrays.copyOf(branches, branches.length + 1);
+        grown[grown.length - 1] = b;
+        byName.put(b.name.toLowerCase(Locale.ROOT), b);
+        branches = grown;
+        return b;
+    }
+
+    // ---- routing ----
+
+    // Car ids are unique across branches
+    void add(Branch branch, Car car) {
+        if (byCarId.putIfAbsent(car.getCarId(), car) != null) {
+            throw new IllegalArgumentException("Duplicate car id: " + car.getCarId());
+        }
+        car.branch = branch;
+        branch.fleet.add(car);
+    }
+
+    Car find(String carId) {
+        return byCarId.get(carId);
+    }
+
+    Car remove(String carId) {
+        Car car = byCarId.remove(carId);
+        if (car != null) car.branch.fleet.remove(carId);
+        return car;
+    }
+
+    // Brings the car's own branch indexes up to date (see FleetStore.sync)
+    void sync(Car car) {
+        car.branch.fleet.sync(car);
+    }
+
+    Reservation findReservation(String reservationId) {
+        for (Branch b : branches) {
+            Reservation r = b.reservations.find(reservationId);
+            if (r != null) return r;
+        }
+        return null;
+    }
+
+    // Cancels in whichever branch holds the reservation (its car may be gone)
+    Reservation cancelReservation(String reservationId) {
+        for (Branch b : branches) {
+            Reservation r = b.reservations.find(reservationId);
+            if (r != null) return b.reservations.cancel(reservationId, b.fleet.find(r.carId));
+        }
+        return null;
+    }
+
+    // ---- fan-out queries ----
+
+    // Runs query on every branch in parallel; results in branch order
+    <T> List<T> fanOut(Function<Branch, T> query) {
+        Branch[] all = branches;
+        if (all.length == 1) return Collections.singletonList(query.apply(all[0]));
+        List<ForkJoinTask<T>> tasks = new ArrayList<>(all.length);
+        for (Branch b : all) tasks.add(ForkJoinTask.adapt(() -> query.apply(b)));
+        if (ForkJoinTask.inForkJoinPool()) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            for (ForkJoinTask<T> t : tasks) pool.execute(t);
+        }
+        List<T> out = new ArrayList<>(all.length);
+        for (ForkJoinTask<T> t : tasks) out.add(t.join());
+        return out;
+    }
+
+    private List<Car> concat(Function<Branch, List<Car>> query) {
+        List<List<Car>> parts = fanOut(query);
+        if (parts.size() == 1) return parts.get(0);
+        int n = 0;
+        for (List<Car> p : parts) n += p.size();
+        List<Car> out = new ArrayList<>(n);
+        for (List<Car> p : parts) out.addAll(p);
+        return out;
+    }
+
+    List<Car> all() { return concat(b -> b.fleet.all()); }
+
+    List<Car> available() { return concat(b -> b.fleet.available()); }
+
+    List<Car> availableBetween(long from, long to, boolean freeNow) {
+        return concat(b -> b.availableBetween(from, to, freeNow));
+    }
+
+    List<Car> rentalsOf(String renterId) { return concat(b -> b.fleet.rentalsOf(renterId)); }
+
+    List<Reservation> reservationsOf(String renterId) {
+        List<Reservation> out = new ArrayList<>();
+        for (Branch b : branches) out.addAll(b.reservations.reservationsOf(renterId));
+        return out;
+    }
+
+    int size() {
+        int total = 0;
+        for (int n : fanOut(b -> b.fleet.size())) total += n;
+        return total;
+    }
+
+    int availableCount() {
+        int total = 0;
+        for (int n : fanOut(b -> b.fleet.availableCount())) total += n;
+        return total;
+    }
+
+    // Each branch answers for the first offset + limit matches; the merge keeps
+    // branch order (FLEET_ORDER) or price order, then cuts the requested page.
+    // Every branch filters and orders by the one book pinned here, and the
+    // merge sorts by it too, so a page never mixes two pricing passes.
+    FleetSearch.Page search(FleetSearch.Query q) {
+        if (branches.length == 1) return branches[0].search.search(q);
+        PriceBook book = PricingEngine.current();
+        int offset = Math.max(0, q.offset), limit = Math.max(0, q.limit);
+        FleetSearch.Query window = q.copy();
+        window.offset = 0;
+        window.limit = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        List<FleetSearch.Page> pages = fanOut(b -> b.search.search(window, book));
+        int total = 0;
+        List<Car> merged = new ArrayList<>();
+        for (FleetSearch.Page p : pages) {
+            total += p.total;
+            merged.addAll(p.cars);
+        }
+        if (q.sort != FleetSearch.Sort.FLEET_ORDER) {
+            Comparator<Car> byPrice = Comparator.comparingDouble(book::priceOf);
+            merged.sort(q.sort == FleetSearch.Sort.PRICE_ASC ? byPrice : byPrice.reversed()); // stable
+        }
+        List<Car> page = offset >= merged.size() ? new ArrayList<>()
+                : new ArrayList<>(merged.subList(offset, Math.min(merged.size(), offset + limit)));
+        return new FleetSearch.Page(page, total, book);
+    }
+
+    boolean matches(FleetSearch.Query q, Car car) {
+        return car.branch != null && car.branch.search.matches(q, car);
+    }
+
+    // Every car, branch by branch
+    @Override
+    public Iterator<Car> iterator() {
+        return all().iterator();
+    }
+}
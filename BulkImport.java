@@ -0,0 +1,286 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongConsumer;
+
+// ===========================
+// BULK IMPORT (CSV)
+// ===========================
+// Streams a CSV of cars (brand,model,price[,id]) or customers
+// (name,password,contact,email[,id]) into RentalService. A header row can
+// also add a "branch" column for cars (default: the first branch).
+//   - the file is read line by line and cut into batches of BATCH rows
+//   - each batch is parsed and validated on the common pool, with at most
+//     IN_FLIGHT batches outstanding, so memory stays bounded whatever the size
+//   - finished batches are inserted in file order, journaled without waiting,
+//     and the import ends with one durable wait and one "reload" event
+// Passwords are hashed in the parse step (so on the pool). That is slow on
+// purpose (see Passwords), so large customer files are best given as
+// already-hashed "pbkdf2$..." values, which are stored unchanged.
+// A header row is optional; if present, its names pick the column order.
+// Quoted fields ("a, b" and "" escapes) are supported; line breaks inside
+// quotes are not.
+class BulkImport {
+    static final int BATCH = 4096;
+    private static final int IN_FLIGHT = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+    private static final int MAX_SAMPLES = 100; // rejected lines kept for the report
+
+    enum Kind {
+        CARS("brand", "model", "price"),
+        CUSTOMERS("name", "password", "contact", "email");
+
+        final String[] columns; // required columns, in default order; "id" and "branch" are optional
+
+        Kind(String... columns) { this.columns = columns; }
+    }
+
+    static final class Report {
+        final Kind kind;
+        final long rows;        // data rows read (header excluded)
+        final long imported;
+        final long rejected;
+        final long millis;
+        final List<String> samples; // "line N: reason", first MAX_SAMPLES
+
+        Report(Kind kind, long rows, long imported, long rejected, long millis, List<String> samples) {
+            this.kind = kind;
+            this.rows = rows;
+            this.imported = imported;
+            this.rejected = rejected;
+            this.millis = millis;
+            this.samples = samples;
+        }
+
+        double rowsPerSecond() { return millis == 0 ? rows : rows * 1000.0 / millis; }
+
+        String summary() {
+            return String.format(Locale.ROOT, "Imported %d of %d %s in %.1f s (%.0f rows/s), %d rejected",
+                    imported, rows, kind.name().toLowerCase(Locale.ROOT), millis / 1000.0, rowsPerSecond(), rejected);
+        }
+    }
+
+    // One batch after parsing: the valid rows plus the reasons the rest failed
+    private static final class Parsed {
+        final List<Object> rows = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+    }
+
+    // progress receives the number of data rows handled so far, after every batch
+    static Report run(Kind kind, Path file, LongConsumer progress) throws IOException {
+        RentalService.startup.awaitFleet(); // branch names in the file may come from saved data
+        long start = System.nanoTime();
+        long rows = 0, imported = 0, rejected = 0;
+        List<String> samples = new ArrayList<>();
+        ArrayDeque<CompletableFuture<Parsed>> inFlight = new ArrayDeque<>();
+        Journal.Entry last = null;
+
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = in.readLine();
+            if (line != null && line.startsWith("\uFEFF")) line = line.substring(1); // BOM
+            int[] order = header(kind, line);
+            long lineNo = 1;
+            if (order != null) {
+                line = in.readLine();
+                lineNo++;
+            } else {
+                order = defaultOrder(kind);
+            }
+            int[] columns = order;
+
+            List<String> batch = new ArrayList<>(BATCH);
+            long batchStart = lineNo;
+            while (true) {
+                if (line != null) {
+                    if (batch.isEmpty()) batchStart = lineNo;
+                    batch.add(line);
+                }
+                boolean eof = line == null;
+                if (batch.size() == BATCH || (eof && !batch.isEmpty())) {
+                    List<String> lines = batch;
+                    long first = batchStart;
+                    inFlight.add(CompletableFuture.supplyAsync(() -> parse(kind, columns, lines, first)));
+                    batch = new ArrayList<>(BATCH);
+                }
+                // Insert finished batches in order; block only when the window is full
+                while (!inFlight.isEmpty() && (inFlight.size() >= IN_FLIGHT || eof || inFlight.peek().isDone())) {
+                    Parsed p = inFlight.poll().join();
+                    List<String> refused = new ArrayList<>();
+                    Journal.Entry e = insert(kind, p.rows, refused);
+                    if (e != null) last = e;
+                    rows += p.rows.size() + p.errors.size();
+                    imported += p.rows.size() - refused.size();
+                    rejected += p.errors.size() + refused.size();
+                    for (String s : p.errors) if (samples.size() < MAX_SAMPLES) samples.add(s);
+                    for (String s : refused) if (samples.size() < MAX_SAMPLES) samples.add(s);
+                    if (progress != null) progress.accept(rows);
+                }
+                if (eof) break;
+                line = in.readLine();
+                lineNo++;
+            }
+        } finally {
+            // Everything inserted so far becomes durable and visible together,
+            // even when the file turned out to be unreadable halfway
+            RentalService.importFinished(last);
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        return new Report(kind, rows, imported, rejected, millis, samples);
+    }
+
+    // ---- parsing (runs on the pool) ----
+
+    private static Parsed parse(Kind kind, int[] columns, List<String> lines, long firstLine) {
+        Parsed out = new Parsed();
+        long lineNo = firstLine;
+        for (String line : lines) {
+            if (line.isBlank()) {
+                lineNo++;
+                continue;
+            }
+            String error;
+            try {
+                String[] f = split(line);
+                error = kind == Kind.CARS ? car(f, columns, out) : customer(f, columns, out);
+            } catch (IllegalArgumentException e) {
+                error = e.getMessage();
+            }
+            if (error != null) out.errors.add("line " + lineNo + ": " + error);
+            lineNo++;
+        }
+        return out;
+    }
+
+    // columns[i] is the CSV position of kind.columns[i], followed by the id
+    // and branch columns (-1 when absent)
+    private static String car(String[] f, int[] columns, Parsed out) {
+        String brand = field(f, columns[0]), model = field(f, columns[1]), price = field(f, columns[2]);
+        String id = optional(f, columns[3]), branchName = optional(f, columns[4]);
+        Branch branch = null;
+        if (!branchName.isEmpty()) {
+            branch = RentalService.branches.named(branchName);
+            if (branch == null) return "unknown branch '" + branchName + "'";
+        }
+        double p;
+        try {
+            p = Double.parseDouble(price);
+        } catch (NumberFormatException e) {
+            return "bad price '" + price + "'";
+        }
+        String problem = RentalService.carProblem(brand, model, p);
+        if (problem != null) return problem;
+        Car car = id.isEmpty() ? Car.create(brand, model, p) : Car.create(id, brand, model, p);
+        car.branch = branch; // where RentalService.importCars will put it
+        out.rows.add(car);
+        return null;
+    }
+
+    private static String customer(String[] f, int[] columns, Parsed out) {
+        String name = field(f, columns[0]), password = field(f, columns[1]);
+        String contact = field(f, columns[2]), email = field(f, columns[3]);
+        String id = optional(f, columns[4]);
+        if (name.isEmpty() || password.isEmpty() || contact.isEmpty() || email.isEmpty()) {
+            return "name, password, contact and email are required";
+        }
+        // customers.txt is pipe-delimited
+        for (String s : new String[]{name, password, contact, email, id}) {
+            if (s.indexOf('|') >= 0) return "'|' is not allowed in a field";
+        }
+        if (id.isEmpty()) {
+            out.rows.add(Passwords.isHash(password) ? new Customer("C" + RentalService.ids.next(), name, password,
+                    contact, email) : new Customer(name, password, contact, email));
+        } else {
+            out.rows.add(new Customer(id, name, Passwords.isHash(password) ? password : Passwords.hash(password),
+                    contact, email));
+        }
+        return null;
+    }
+
+    private static String field(String[] f, int column) {
+        if (column >= f.length) throw new IllegalArgumentException("expected at least " + (column + 1) + " columns");
+        return f[column].trim();
+    }
+
+    private static String optional(String[] f, int column) {
+        return column < 0 || column >= f.length ? "" : f[column].trim();
+    }
+
+    // One CSV line; "" inside quotes is a literal quote
+    static String[] split(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cur.append('"');
+                    i++;
+                } else if (ch == '"') {
+                    quoted = false;
+                } else {
+                    cur.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                out.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(ch);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("unterminated quote");
+        out.add(cur.toString());
+        return out.toArray(new String[0]);
+    }
+
+    // Column positions from a header row, or null if the line isn't a header
+    private static int[] header(Kind kind, String line) {
+        if (line == null) return null;
+        String[] names;
+        try {
+            names = split(line);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        for (int i = 0; i < names.length; i++) names[i] = names[i].trim().toLowerCase(Locale.ROOT);
+        List<String> given = Arrays.asList(names);
+        int[] order = new int[kind.columns.length + 2];
+        for (int i = 0; i < kind.columns.length; i++) {
+            order[i] = given.indexOf(kind.columns[i]);
+            if (order[i] < 0) return null;
+        }
+        order[kind.columns.length] = given.indexOf("id");
+        order[kind.columns.length + 1] = given.indexOf("branch");
+        return order;
+    }
+
+    private static int[] defaultOrder(Kind kind) {
+        int[] order = new int[kind.columns.length + 2];
+        for (int i = 0; i < kind.columns.length; i++) order[i] = i;
+        order[kind.columns.length] = kind.columns.length; // optional trailing id
+        order[kind.columns.length + 1] = -1;              // branch only by header
+        return order;
+    }
+
+    // ---- inserting (on the reading thread, in file order) ----
+
+    @SuppressWarnings("unchecked")
+    private static Journal.Entry insert(Kind kind, List<Object> rows, List<String> refused) {
+        if (rows.isEmpty()) return null;
+        if (kind == Kind.CARS) {
+            return RentalService.importCars((List<Car>) (List<?>) rows,
+                    c -> refused.add("car " + c.getCarId() + ": id already in the fleet"));
+        }
+        return RentalService.importCustomers((List<Customer>) (List<?>) rows,
+                c -> refused.add("customer " + c.getName() + ": name or id already registered"));
+    }
+}
@@ -1,13 +1,26 @@
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.*;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.io.*;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 
 // ===========================
 // 1. OOP MODELS
@@ -16,7 +29,7 @@ import java.nio.file.Paths;
 abstract class User {
     protected String id;
     protected String name;
-    protected String password;
+    protected volatile String password; // a Passwords hash; plaintext in data from older builds
 
     public User(String id, String name, String password) {
         this.id = id;
@@ -25,7 +38,7 @@ abstract class User {
     }
     
     public String getName() { return name; }
-    public boolean checkPassword(String input) { return password.equals(input); }
+    public boolean checkPassword(String input) { return Passwords.verify(input, password); }
     public String getId() { return id; }
 }
 
@@ -33,13 +46,14 @@ class Customer extends User {
     private String contact;
     private String email;
 
+    // New customer: the password is hashed here (slow; keep off the EDT)
     public Customer(String name, String password, String contact, String email) {
-        super("C" + System.currentTimeMillis(), name, password);
+        super("C" + RentalService.ids.next(), name, Passwords.hash(password));
         this.contact = contact;
         this.email = email;
     }
 
-    // Constructor for loading from file (with existing ID)
+    // Constructor for loading from file (with existing ID); password is stored as given
     public Customer(String id, String name, String password, String contact, String email) {
         super(id, name, password);
         this.contact = contact;
@@ -56,88 +70,688 @@ class Admin extends User {
     }
 }
 
-class Car {
-    private String carId;
-    private String brand;
-    private String model;
-    private double price;
-    private boolean isAvailable;
-    private String currentRenterId; // Null if available
-
-    public Car(String brand, String model, double price) {
-        this.carId = "V" + (int)(Math.random() * 10000);
-        this.brand = brand;
-        this.model = model;
-        this.price = price;
-        this.isAvailable = true;
-        this.currentRenterId = null;
+// A car of the fleet. Where its fields and booking live depends on
+// -Drental.fleet.storage: "objects" (the default) keeps them on a HeapCar,
+// "columnar" in a row of one shared ColumnarFleet, read through a RowCar.
+// Either way a booking changes by compare-and-set: each transition only
+// succeeds from the state it expects and bumps the version, which lets
+// journal replay apply bookings in the right order even if they were logged
+// out of order.
+abstract class Car {
+    // FleetStore bookkeeping
+    int slot = -1;
+    Branch branch; // set by BranchRouter.add
+    String indexedRenterId; // renter as last recorded in the store's renter index
+
+    private static final ColumnarFleet ROWS = rowStore(System.getProperty("rental.fleet.storage", "objects"));
+
+    private static ColumnarFleet rowStore(String storage) {
+        switch (storage.trim().toLowerCase(Locale.ROOT)) {
+            case "objects": return null;
+            case "columnar": return new ColumnarFleet();
+            default: throw new IllegalArgumentException("rental.fleet.storage must be objects or columnar: " + storage);
+        }
+    }
+
+    static Car create(String brand, String model, double price) {
+        return create("V" + RentalService.ids.next(), brand, model, price);
+    }
+
+    // For restoring a car with an existing ID
+    static Car create(String carId, String brand, String model, double price) {
+        ColumnarFleet rows = ROWS;
+        return rows == null ? new HeapCar(carId, brand, model, price) : rows.view(rows.append(carId, brand, model, price));
+    }
+
+    // Brand and model names repeat across the fleet, but every journal,
+    // snapshot or CSV line decodes a fresh copy. Keeping one shared instance
+    // per name saves two strings per car (~100 bytes) on large fleets. The
+    // pool stops growing past NAME_POOL_MAX distinct names.
+    private static final int NAME_POOL_MAX = 1 << 16;
+    private static final ConcurrentHashMap<String, String> NAMES = new ConcurrentHashMap<>();
+
+    static String canonical(String name) {
+        if (name == null) return null;
+        String shared = NAMES.get(name);
+        if (shared != null) return shared;
+        if (NAMES.size() >= NAME_POOL_MAX) return name;
+        shared = NAMES.putIfAbsent(name, name);
+        return shared != null ? shared : name;
     }
 
     // Getters
-    public String getCarId() { return carId; }
-    public String getBrand() { return brand; }
-    public String getModel() { return model; }
-    public double getPrice() { return price; }
-    public boolean isAvailable() { return isAvailable; }
-    public String getCurrentRenterId() { return currentRenterId; }
+    public abstract String getCarId();
+    public abstract String getBrand();
+    public abstract String getModel();
+    // Current rate from the published price book (the list price until the
+    // first repricing pass, or for a car added since). Code showing many cars
+    // should pin one book instead: PricingEngine.current().priceOf(car)
+    public double getPrice() { return PricingEngine.current().priceOf(this); }
+    public abstract double getListPrice(); // as entered; PricingEngine publishes the rate actually charged
+    public boolean isAvailable() { return booking().isFree(); }
+    public boolean isRetired() { return booking().retired; }
+    public String getCurrentRenterId() { return booking().renterId; } // Null if available
+    abstract Booking booking();
+
+    // Logic: each transition returns the new booking version, or -1 if the
+    // car wasn't in the state it expects
+    public long rent(String userId) {
+        return rent(userId, System.currentTimeMillis(), getPrice());
+    }
+
+    // rate is the price per day locked in for this rental
+    public abstract long rent(String userId, long since, double rate);
+
+    // Returns the rental it ended (renter, start time; the new version is one
+    // higher), or null if the user doesn't have the car
+    public abstract Booking returnCar(String userId);
+
+    // Takes a free car out of service for good
+    abstract boolean retire();
 
-    // Logic
-    public void rent(String userId) {
-        this.isAvailable = false;
-        this.currentRenterId = userId;
+    // Replay: adopt a logged booking unless a newer one is already in place.
+    // rate is NaN when the record predates locked rates.
+    abstract boolean restore(String renterId, long version, long since, double rate);
+
+    static final class Booking {
+        static final Booking NEW = new Booking(null, 0, false, 0, Double.NaN);
+
+        final String renterId;
+        final long version;
+        final boolean retired;
+        final long since; // epoch millis the current rental began; 0 if free or unknown
+        final double rate; // price per day locked in at rent time; NaN if free or unknown
+
+        Booking(String renterId, long version, boolean retired, long since, double rate) {
+            this.renterId = renterId;
+            this.version = version;
+            this.retired = retired;
+            this.since = since;
+            this.rate = rate;
+        }
+
+        boolean isFree() { return renterId == null && !retired; }
+    }
+}
+
+// A car holding its own fields. Availability and renter are swapped together
+// as one immutable Booking, so rent/return are compare-and-set operations on
+// this single field.
+final class HeapCar extends Car {
+    private final String carId;
+    private final String brand;
+    private final String model;
+    private final double price;
+    private volatile Booking booking = Booking.NEW;
+
+    private static final VarHandle BOOKING;
+    static {
+        try {
+            BOOKING = MethodHandles.lookup().findVarHandle(HeapCar.class, "booking", Booking.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    HeapCar(String carId, String brand, String model, double price) {
+        this.carId = carId;
+        this.brand = canonical(brand);
+        this.model = canonical(model);
+        this.price = price;
     }
 
-    public void returnCar() {
-        this.isAvailable = true;
-        this.currentRenterId = null;
+    @Override public String getCarId() { return carId; }
+    @Override public String getBrand() { return brand; }
+    @Override public String getModel() { return model; }
+    @Override public double getListPrice() { return price; }
+    @Override Booking booking() { return booking; }
+
+    @Override
+    public long rent(String userId, long since, double rate) {
+        Booking current = booking;
+        if (!current.isFree()) return -1;
+        Booking next = new Booking(userId, current.version + 1, false, since, rate);
+        return BOOKING.compareAndSet(this, current, next) ? next.version : -1;
     }
+
+    @Override
+    public Booking returnCar(String userId) {
+        Booking current = booking;
+        if (current.renterId == null || !current.renterId.equals(userId)) return null;
+        Booking next = new Booking(null, current.version + 1, false, 0, Double.NaN);
+        return BOOKING.compareAndSet(this, current, next) ? current : null;
+    }
+
+    @Override
+    boolean retire() {
+        Booking current = booking;
+        if (!current.isFree()) return false;
+        return BOOKING.compareAndSet(this, current, new Booking(null, current.version + 1, true, 0, Double.NaN));
+    }
+
+    @Override
+    boolean restore(String renterId, long version, long since, double rate) {
+        Booking current;
+        do {
+            current = booking;
+            if (current.retired || current.version >= version) return false;
+        } while (!BOOKING.compareAndSet(this, current, new Booking(renterId, version, false, since, rate)));
+        return true;
+    }
+}
+
+enum BookingResult {
+    OK, CONFLICT, NOT_RENTER, NOT_FOUND;
+
+    public boolean ok() { return this == OK; }
 }
 
 // ===========================
 // 2. CENTRAL DATA STORE
 // ===========================
 class RentalService {
-    public static List<Car> fleet = new ArrayList<>();
-    public static List<User> users = new ArrayList<>();
-    public static User currentUser = null;
-    private static final String CUSTOMERS_FILE = "customers.txt";
+    // Cars live in per-branch shards; single-car operations go to the car's branch
+    public static final BranchRouter branches = BranchRouter.fromSystemProperties();
+    public static final UserDirectory users = new UserDirectory();
+    // Everyone logged in, GUI windows and API clients alike
+    static final SessionManager sessions = SessionManager.fromSystemProperties();
+    private static final String CUSTOMERS_FILE = System.getProperty("rental.customers", "customers.txt");
+    // Every mutation is appended here; customers.txt is only the legacy import
+    static final Journal journal = Journal.fromSystemProperties();
+    // Customer and car ids; unique across threads, restarts and nodes
+    static final IdGenerator ids = IdGenerator.fromSystemProperties(journal.dir());
+    public static final EventBus events = new EventBus();
+    public static final RentalLedger ledger = new RentalLedger();
+    // Reprices the fleet every few minutes; screens reload when a new book is out
+    static final PricingEngine pricing = new PricingEngine(branches,
+            book -> events.publish(RentalEvent.pricesUpdated()));
+    // Customers waiting for a car or a model; freed cars are offered in join order
+    static final Waitlist waitlist = new Waitlist(RentalService::offerable);
+    // Customers loaded with an id someone else already had (older builds took
+    // ids from the clock) -> their old id; they get a fresh id, journaled after replay
+    private static final Map<User, String> reassignedIds = new LinkedHashMap<>();
+    private static final Path SNAPSHOT_FILE = journal.dir().resolve("snapshot.bin");
+    static final int MAX_NAME_LENGTH = 100; // brand and model
+
+    // Loading runs in stages on a background thread; see Startup
+    static final Startup startup = new Startup(RentalService::loadUsers, RentalService::loadFleet,
+            RentalService::startServices);
+    private static StateSnapshot.Contents snapshot; // read by loadUsers, applied by loadFleet
+    private static boolean restored;
+
+    // Starts loading if needed and blocks until every stage is done
+    public static void ready() {
+        startup.awaitReady();
+    }
 
-    static {
-        // Seed Data
+    // Stage 1: customers from the last snapshot (or the customers file before
+    // the first one), then the customers journaled since. Login works after this.
+    private static void loadUsers() throws IOException {
         users.add(new Admin("admin", "admin123"));
-        // Load saved customers from file
-        loadCustomers();
+        snapshot = readSnapshot();
+        restored = snapshot != null;
+        if (restored) {
+            for (Customer c : snapshot.customers) addLoaded(c);
+        } else {
+            loadCustomers();
+        }
+        journal.scan(RentalService::replayUsers);
+    }
+
+    // Stage 2: cars and reservations, rental history, then the rest of the
+    // journal. Writes wait for this stage (see awaitWritable()).
+    private static void loadFleet() throws IOException {
+        StateSnapshot.Contents snap = snapshot;
+        snapshot = null;
+        if (snap != null) {
+            for (int i = 0; i < snap.cars.size(); i++) {
+                branches.add(branchNamed(snap.carBranches.get(i)), snap.cars.get(i));
+            }
+            for (Reservation r : snap.reservations) {
+                Car car = branches.find(r.carId);
+                if (car != null) car.branch.reservations.add(car, r, Long.MIN_VALUE);
+            }
+        }
+        // Rental history first: replay tops it up with any rows it is missing
+        try {
+            ledger.open(journal.dir().resolve("ledger.bin"));
+        } catch (IOException e) {
+            System.err.println("Error opening rental ledger: " + e.getMessage());
+        }
+        // Replay everything that happened since; a failure here fails the stage
+        journal.replayAndOpen(RentalService::replayFleet);
+        events.publish(RentalEvent.bulkImported()); // screens opened during loading reload
+    }
+
+    // Stage 3: everything that writes or publishes
+    private static void startServices() {
+        journal.setCheckpoint(RentalService::writeCheckpoint);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            journal.close();
+            ledger.close();
+        }, "journal-shutdown"));
+        if (!reassignedIds.isEmpty()) {
+            for (Map.Entry<User, String> moved : reassignedIds.entrySet()) {
+                User u = moved.getKey();
+                journal.commit(Journal.Record.customerIdChanged(u.getName(), moved.getValue(), u.getId()));
+            }
+            reassignedIds.clear();
+            journal.checkpointSoon(); // rewrites the snapshot and customers.txt with the new ids
+        }
+        Metrics.gauge("fleetSize", branches::size);
+        Metrics.gauge("availableCars", branches::availableCount);
+        Metrics.gauge("branches", () -> branches.branches().size());
+        Metrics.gauge("users", users::size);
+        Metrics.gauge("ledgerRows", ledger::size);
+        Metrics.gauge("pricing.version", () -> PricingEngine.current().version);
+        Metrics.gauge("waitlist.waiting", waitlist::waitingCount);
+        Metrics.gauge("waitlist.offers", waitlist::offerCount);
+        waitlist.listen((offer, change) -> events.publish(RentalEvent.offer(
+                change == Waitlist.Change.OFFERED ? RentalEvent.Kind.OFFER_OPENED : RentalEvent.Kind.OFFER_CLOSED,
+                offer.car, users.findById(offer.waiter.userId))));
+        Metrics.publish();
+
         // Add default customers only if file doesn't exist or is empty
-        if (users.stream().noneMatch(u -> u instanceof Customer && u.getName().equals("John Doe"))) {
-            users.add(new Customer("John Doe", "123", "999-111-2222", "john@example.com"));
+        if (users.findByName("John Doe") == null) {
+            addCustomer(new Customer("John Doe", "123", "999-111-2222", "john@example.com"));
         }
-        if (users.stream().noneMatch(u -> u instanceof Customer && u.getName().equals("Alice Smith"))) {
-            users.add(new Customer("Alice Smith", "123", "999-333-4444", "alice@example.com"));
+        if (users.findByName("Alice Smith") == null) {
+            addCustomer(new Customer("Alice Smith", "123", "999-333-4444", "alice@example.com"));
         }
 
-        fleet.add(new Car("Toyota", "Camry", 60.0));
-        fleet.add(new Car("Honda", "Civic", 55.0));
-        fleet.add(new Car("Tesla", "Model 3", 120.0));
-        fleet.add(new Car("Ford", "Mustang", 90.0));
+        // Seed the fleet on first run only; afterwards it comes from the journal
+        if (!restored && !journal.hadHistory()) {
+            addCar("Toyota", "Camry", 60.0);
+            addCar("Honda", "Civic", 55.0);
+            addCar("Tesla", "Model 3", 120.0);
+            addCar("Ford", "Mustang", 90.0);
+        }
+        pricing.start();
     }
-    
-    public static void addCar(String brand, String model, double price) {
-        fleet.add(new Car(brand, model, price));
+
+    // Checks the password (the one slow hash per login) and opens a session;
+    // null if the name or password is wrong. A plaintext or weaker stored
+    // password is rehashed with the current settings on the way.
+    public static SessionManager.Session login(String username, String password) {
+        startup.awaitUsers();
+        long start = System.nanoTime();
+        User user = users.findByName(username);
+        boolean ok = user != null && user.checkPassword(password);
+        if (ok && Passwords.needsRehash(user.password)) {
+            user.password = Passwords.hash(password);
+            // Not waited for: if it is lost, the next login simply rehashes again
+            if (user instanceof Customer) {
+                journal.append(Journal.Record.passwordChanged(user.getName(), user.password));
+            }
+        }
+        Metrics.LOGIN.record(start, ok);
+        return ok ? sessions.open(user) : null;
+    }
+
+    public static void logout(String token) {
+        sessions.close(token);
     }
 
-    // Save all customers to file
+    public static Car addCar(String brand, String model, double price) {
+        return addCar(brand, model, price, branches.main());
+    }
+
+    // Throws IllegalArgumentException for a car carProblem() rejects
+    public static Car addCar(String brand, String model, double price, Branch branch) {
+        String problem = carProblem(brand, model, price);
+        if (problem != null) throw new IllegalArgumentException(problem);
+        brand = brand.trim();
+        model = model.trim();
+        awaitWritable();
+        long start = System.nanoTime();
+        Car car = Car.create(brand, model, price);
+        Journal.Entry logged;
+        synchronized (journal.cutLock) {
+            branches.add(branch, car);
+            logged = journal.append(Journal.Record.carAdded(car.getCarId(), brand, model, price, branch.name));
+        }
+        journal.awaitDurable(logged);
+        events.publish(RentalEvent.car(RentalEvent.Kind.CAR_ADDED, car));
+        waitlist.dispatch(car);
+        Metrics.ADD_CAR.record(start);
+        return car;
+    }
+
+    // The one rule for a new car, shared by the screens, the HTTP API and
+    // bulk import: what is wrong with it, or null
+    static String carProblem(String brand, String model, double price) {
+        if (brand == null || model == null || brand.isBlank() || model.isBlank()) return "brand and model are required";
+        if (brand.length() > MAX_NAME_LENGTH || model.length() > MAX_NAME_LENGTH) {
+            return "brand and model are limited to " + MAX_NAME_LENGTH + " characters";
+        }
+        if (!(price > 0) || Double.isInfinite(price)) return "price must be positive";
+        return null;
+    }
+
+    // ---- bulk import (see BulkImport) ----
+    // Batches are applied and journaled without waiting for the disk or
+    // publishing events; importFinished() then waits once for the last record
+    // and publishes one BULK_IMPORTED event. Returns the last record queued.
+
+    // A car's branch may be preset by the importer; otherwise it goes to the main branch
+    static Journal.Entry importCars(List<Car> cars, Consumer<Car> refused) {
+        awaitWritable();
+        Journal.Entry last = null;
+        synchronized (journal.cutLock) {
+            for (Car car : cars) {
+                if (carProblem(car.getBrand(), car.getModel(), car.getListPrice()) != null) {
+                    refused.accept(car);
+                    continue;
+                }
+                Branch branch = car.branch != null ? car.branch : branches.main();
+                try {
+                    branches.add(branch, car);
+                } catch (IllegalArgumentException duplicate) {
+                    refused.accept(car);
+                    continue;
+                }
+                last = journal.append(Journal.Record.carAdded(car.getCarId(), car.getBrand(), car.getModel(),
+                        car.getListPrice(), branch.name));
+            }
+        }
+        return last;
+    }
+
+    static Journal.Entry importCustomers(List<Customer> customers, Consumer<Customer> refused) {
+        awaitWritable();
+        Journal.Entry last = null;
+        for (Customer c : customers) {
+            if (users.findById(c.getId()) != null || !users.add(c)) {
+                refused.accept(c);
+                continue;
+            }
+            last = journal.append(Journal.Record.customerAdded(c.getId(), c.getName(), c.password,
+                    c.getContact(), c.getEmail()));
+        }
+        return last;
+    }
+
+    static void importFinished(Journal.Entry last) {
+        if (last == null) return;
+        journal.awaitDurable(last);
+        events.publish(RentalEvent.bulkImported());
+    }
+
+    public static Car findCar(String carId) {
+        return branches.find(carId);
+    }
+
+    // Only free cars can be taken out of the fleet
+    public static BookingResult removeCar(String carId) {
+        awaitWritable();
+        long start = System.nanoTime();
+        Car car = branches.find(carId);
+        if (car == null) return timed(Metrics.REMOVE_CAR, start, BookingResult.NOT_FOUND);
+        if (!car.retire()) return timed(Metrics.REMOVE_CAR, start, BookingResult.CONFLICT);
+        Journal.Entry logged;
+        synchronized (journal.cutLock) {
+            branches.remove(carId);
+            logged = journal.append(Journal.Record.carRemoved(carId));
+        }
+        journal.awaitDurable(logged);
+        waitlist.removed(car);
+        events.publish(RentalEvent.car(RentalEvent.Kind.CAR_REMOVED, car));
+        return timed(Metrics.REMOVE_CAR, start, BookingResult.OK);
+    }
+
+    // Booking engine: the car's own compare-and-set decides the winner, so two
+    // sessions racing for the same car get exactly one OK and one CONFLICT.
+    // The winner pays the rate of the price book current at this moment.
+    // A car offered to a waiter is theirs until they claim it or the offer ends,
+    // and a free car that waiters want goes to them first (see Waitlist.keepsOff).
+    public static BookingResult rentCar(String carId, String userId) {
+        awaitWritable();
+        long start = System.nanoTime();
+        Car car = branches.find(carId);
+        if (car == null) return timed(Metrics.RENT, start, BookingResult.NOT_FOUND);
+        // A reservation covering today keeps walk-ins off the car
+        Reservation holder = car.branch.reservations.holder(carId, today());
+        if (holder != null && !holder.renterId.equals(userId)) return timed(Metrics.RENT, start, BookingResult.CONFLICT);
+        if (waitlist.keepsOff(car, userId)) return timed(Metrics.RENT, start, BookingResult.CONFLICT);
+        long since = System.currentTimeMillis();
+        double rate = car.getPrice();
+        long version = car.rent(userId, since, rate);
+        if (version < 0) return timed(Metrics.RENT, start, BookingResult.CONFLICT);
+        branches.sync(car);
+        pricing.recordRental(car);
+        journal.commit(Journal.Record.rented(carId, userId, version, since, rate));
+        waitlist.rented(car, userId);
+        events.publish(RentalEvent.car(RentalEvent.Kind.CAR_RENTED, car));
+        return timed(Metrics.RENT, start, BookingResult.OK);
+    }
+
+    public static BookingResult returnCar(String carId, String userId) {
+        awaitWritable();
+        long start = System.nanoTime();
+        Car car = branches.find(carId);
+        if (car == null) return timed(Metrics.RETURN, start, BookingResult.NOT_FOUND);
+        Car.Booking ended = car.returnCar(userId);
+        if (ended == null) return timed(Metrics.RETURN, start, BookingResult.NOT_RENTER);
+        branches.sync(car);
+        long end = System.currentTimeMillis();
+        double rate = Double.isNaN(ended.rate) ? car.getPrice() : ended.rate; // rentals from before locked rates
+        Journal.Entry logged;
+        synchronized (ledger) { // ledger rows and their journal records in the same order
+            long row = ledger.append(carId, car.getBrand(), userId, ended.since, end, rate);
+            logged = journal.append(Journal.Record.returned(carId, ended.version + 1, userId, ended.since, end, row,
+                    car.getBrand(), rate));
+        }
+        journal.awaitDurable(logged);
+        events.publish(RentalEvent.car(RentalEvent.Kind.CAR_RETURNED, car));
+        waitlist.dispatch(car);
+        return timed(Metrics.RETURN, start, BookingResult.OK);
+    }
+
+    // Books the car for whole days [from, to). A range starting today also hands
+    // the car over now, the same as rentCar; later ranges only hold it.
+    public static BookingResult reserve(String carId, String userId, LocalDate from, LocalDate to) {
+        awaitWritable();
+        long start = System.nanoTime();
+        long today = today();
+        checkRange(from, to, today);
+        Car car = branches.find(carId);
+        if (car == null || car.isRetired()) return timed(Metrics.RESERVE, start, BookingResult.NOT_FOUND);
+        Reservation r = new Reservation("R" + ids.next(), carId, userId, from.toEpochDay(), to.toEpochDay());
+        if (!car.branch.reservations.add(car, r, today)) return timed(Metrics.RESERVE, start, BookingResult.CONFLICT);
+        journal.commit(Journal.Record.reserved(r));
+        if (r.covers(today) && !userId.equals(car.getCurrentRenterId())) {
+            BookingResult now = rentCar(carId, userId);
+            if (!now.ok()) {
+                cancelReservation(r.id); // lost the car to a walk-in between the two steps
+                return timed(Metrics.RESERVE, start, now);
+            }
+        } else {
+            events.publish(RentalEvent.car(RentalEvent.Kind.CAR_RESERVED, car));
+        }
+        return timed(Metrics.RESERVE, start, BookingResult.OK);
+    }
+
+    public static boolean cancelReservation(String reservationId) {
+        awaitWritable();
+        Reservation r = branches.cancelReservation(reservationId);
+        if (r == null) return false;
+        Car car = branches.find(r.carId);
+        journal.commit(Journal.Record.reservationCancelled(reservationId));
+        if (car != null) {
+            events.publish(RentalEvent.car(RentalEvent.Kind.RESERVATION_CANCELLED, car));
+            waitlist.dispatch(car);
+        }
+        return true;
+    }
+
+    // ---- waitlist (see Waitlist) ----
+    // Joining also offers a matching free car at once, if the customer is next
+    // in line for one. Throws IllegalArgumentException for an unknown car or a
+    // blank brand/model.
+
+    public static Waitlist.Waiter joinWaitlist(String userId, String carId) {
+        startup.awaitFleet();
+        Car car = branches.find(carId);
+        if (car == null || car.isRetired()) throw new IllegalArgumentException("No car " + carId);
+        Waitlist.Waiter w = waitlist.joinCar(userId, carId);
+        waitlist.dispatch(car);
+        return w;
+    }
+
+    public static Waitlist.Waiter joinWaitlist(String userId, String brand, String model) {
+        startup.awaitFleet();
+        if (brand == null || model == null || brand.isBlank() || model.isBlank()) {
+            throw new IllegalArgumentException("Brand and model are required");
+        }
+        Waitlist.Waiter w = waitlist.joinModel(userId, brand, model);
+        FleetSearch.Query q = new FleetSearch.Query();
+        q.text = brand + " " + model;
+        q.availableNow = true;
+        q.limit = 50;
+        for (Car car : branches.search(q).cars) {
+            if (waitlist.offerFor(userId) != null) break;
+            if (Waitlist.modelKey(car.getBrand(), car.getModel()).equals(w.key)) waitlist.dispatch(car);
+        }
+        return w;
+    }
+
+    public static boolean leaveWaitlist(String userId, long waiterSeq) {
+        return waitlist.leave(userId, waiterSeq);
+    }
+
+    // Lets the held car go to the next waiter
+    public static boolean declineOffer(String userId, String carId) {
+        return waitlist.decline(userId, carId);
+    }
+
+    // Whether the waitlist leaves this car to userId (null: someone not logged
+    // in), i.e. it isn't held for another waiter. Lists of bookable cars, on
+    // screen and over the API, show only these.
+    public static boolean openTo(Car car, String userId) {
+        String holder = waitlist.heldFor(car.getCarId());
+        return holder == null || holder.equals(userId);
+    }
+
+    // One page of q from a branch (every branch when null), leaving out the cars
+    // held for other waiters. Paging stays in the search index: held cars are
+    // few (one open offer per waiter), so the index is asked for that many
+    // extra rows and they are taken out before the page is cut.
+    public static FleetSearch.Page searchOpenTo(FleetSearch.Query q, Branch branch, String userId) {
+        List<Car> held = waitlist.heldFrom(userId);
+        if (held.isEmpty()) return branch == null ? branches.search(q) : branch.search.search(q);
+        int offset = Math.max(0, q.offset), limit = Math.max(0, q.limit);
+        FleetSearch.Query window = q.copy();
+        window.offset = 0;
+        window.limit = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit + held.size());
+        FleetSearch.Page page = branch == null ? branches.search(window) : branch.search.search(window);
+        int hidden = 0;
+        for (Car c : held) {
+            if ((branch == null || c.branch == branch) && branches.matches(q, c)) hidden++;
+        }
+        List<Car> open = new ArrayList<>(page.cars);
+        open.removeAll(held);
+        List<Car> cut = offset >= open.size() ? new ArrayList<>()
+                : new ArrayList<>(open.subList(offset, Math.min(open.size(), offset + limit)));
+        return new FleetSearch.Page(cut, Math.max(0, page.total - hidden), page.book);
+    }
+
+    // Free, still in the fleet and not held by a reservation today
+    private static boolean offerable(Car car) {
+        return branches.find(car.getCarId()) == car && car.isAvailable()
+                && car.branch.reservations.holder(car.getCarId(), today()) == null;
+    }
+
+    // Cars that can be reserved for [from, to): no reservation overlaps the
+    // range and, if it starts today, nobody has the car out right now
+    public static List<Car> availableBetween(LocalDate from, LocalDate to) {
+        long start = System.nanoTime();
+        long today = today();
+        checkRange(from, to, today);
+        long f = from.toEpochDay(), t = to.toEpochDay();
+        List<Car> free = branches.availableBetween(f, t, f <= today);
+        Metrics.AVAILABILITY.record(start);
+        return free;
+    }
+
+    // Single-car form of availableBetween, for live table updates
+    public static boolean isAvailableBetween(Car car, LocalDate from, LocalDate to) {
+        long f = from.toEpochDay(), t = to.toEpochDay();
+        return branches.find(car.getCarId()) == car && !car.isRetired()
+                && (f > today() || car.isAvailable()) && car.branch.reservations.isFree(car.getCarId(), f, t);
+    }
+
+    // The user's reservation that holds this car today and hasn't been picked up yet
+    public static Reservation pickup(Car car, String userId) {
+        Reservation r = car.branch == null ? null : car.branch.reservations.holder(car.getCarId(), today());
+        return r != null && r.renterId.equals(userId) && car.isAvailable() ? r : null;
+    }
+
+    public static List<Car> pickups(String userId) {
+        List<Car> out = new ArrayList<>();
+        for (Reservation r : branches.reservationsOf(userId)) {
+            Car car = branches.find(r.carId);
+            if (car != null && pickup(car, userId) == r) out.add(car);
+        }
+        return out;
+    }
+
+    // Every mutation starts here: waits for the fleet (the journal opens with it),
+    // then refuses with UncheckedIOException before changing anything if the
+    // journal can't take writes. A write that fails later throws the same way
+    // from commit/awaitDurable, so callers never see OK for a lost record.
+    private static void awaitWritable() {
+        startup.awaitFleet();
+        journal.checkWritable();
+    }
+
+    static long today() {
+        return LocalDate.now().toEpochDay();
+    }
+
+    // Throws IllegalArgumentException for a range nobody can book
+    static void checkRange(LocalDate from, LocalDate to) {
+        checkRange(from, to, today());
+    }
+
+    private static void checkRange(LocalDate from, LocalDate to, long today) {
+        if (from == null || to == null) throw new IllegalArgumentException("Both dates are required");
+        if (from.toEpochDay() < today) throw new IllegalArgumentException("Start date is in the past");
+        if (!to.isAfter(from)) throw new IllegalArgumentException("End date must be after start date");
+        if (to.toEpochDay() - from.toEpochDay() > ReservationBook.MAX_DAYS) {
+            throw new IllegalArgumentException("Ranges are limited to " + ReservationBook.MAX_DAYS + " days");
+        }
+    }
+
+    private static BookingResult timed(Metrics.Timer timer, long start, BookingResult result) {
+        timer.record(start, result.ok());
+        return result;
+    }
+
+    // Save all customers to file (written aside and swapped in, so a crash
+    // mid-write never leaves a truncated file behind)
     public static void saveCustomers() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(CUSTOMERS_FILE))) {
-            for (User user : users) {
+        long start = System.nanoTime();
+        try {
+            writeCustomers(Paths.get(CUSTOMERS_FILE), users);
+            Metrics.SAVE_CUSTOMERS.record(start);
+        } catch (IOException e) {
+            Metrics.SAVE_CUSTOMERS.record(start, false);
+            System.err.println("Error saving customers: " + e.getMessage());
+        }
+    }
+
+    static void writeCustomers(Path target, Iterable<User> all) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(tmp))) {
+            for (User user : all) {
                 if (user instanceof Customer) {
                     Customer c = (Customer) user;
                     writer.println(c.getId() + "|" + c.getName() + "|" + c.password + "|" + 
                                  c.getContact() + "|" + c.getEmail());
                 }
             }
-        } catch (IOException e) {
-            System.err.println("Error saving customers: " + e.getMessage());
         }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 
     // Load customers from file
@@ -146,28 +760,146 @@ class RentalService {
             return; // File doesn't exist yet, skip loading
         }
         
-        try (BufferedReader reader = Files.newBufferedReader(Paths.get(CUSTOMERS_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                String[] parts = line.split("\\|");
-                if (parts.length == 5) {
-                    String id = parts[0];
-                    String name = parts[1];
-                    String password = parts[2];
-                    String contact = parts[3];
-                    String email = parts[4];
-                    users.add(new Customer(id, name, password, contact, email));
+        try {
+            CustomerFileLoader.Result loaded = CustomerFileLoader.load(Paths.get(CUSTOMERS_FILE));
+            for (Customer c : loaded.customers) {
+                if (!addLoaded(c)) {
+                    System.err.println("Skipping duplicate customer name: " + c.getName());
                 }
             }
+            if (loaded.malformed > 0) {
+                System.err.println("Skipped " + loaded.malformed + " malformed line(s) in " + CUSTOMERS_FILE);
+            }
         } catch (IOException e) {
             System.err.println("Error loading customers: " + e.getMessage());
         }
     }
 
-    // Add a new customer and save to file
-    public static void addCustomer(Customer customer) {
-        users.add(customer);
+    // The last snapshot, or null if there is none. One that exists but can't
+    // be read fails the stage: the journal before it is gone, so nothing else
+    // could stand in for it.
+    private static StateSnapshot.Contents readSnapshot() throws IOException {
+        if (!Files.exists(SNAPSHOT_FILE)) return null;
+        try {
+            return StateSnapshot.read(SNAPSHOT_FILE);
+        } catch (IOException e) {
+            throw new IOException("Unreadable snapshot " + SNAPSHOT_FILE + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Add a new customer and journal it; false if the username is taken
+    public static boolean addCustomer(Customer customer) {
+        awaitWritable();
+        long start = System.nanoTime();
+        if (!users.add(customer)) {
+            Metrics.REGISTER.record(start, false);
+            return false;
+        }
+        journal.commit(Journal.Record.customerAdded(customer.getId(), customer.getName(), customer.password,
+                customer.getContact(), customer.getEmail()));
+        events.publish(RentalEvent.customerRegistered(customer));
+        Metrics.REGISTER.record(start);
+        return true;
+    }
+
+    // Customers from disk; a duplicate id (same id, different name) is
+    // migrated to a fresh one. The first holder keeps the id and its rentals.
+    private static boolean addLoaded(Customer c) {
+        User holder = users.findById(c.getId());
+        if (holder != null && users.findByName(c.getName()) == null) {
+            String old = c.getId();
+            c.id = "C" + ids.next();
+            System.err.println("Customer " + c.getName() + " shared id " + old + " with " + holder.getName()
+                    + "; reassigned to " + c.getId());
+            if (!users.add(c)) return false;
+            reassignedIds.put(c, old);
+            return true;
+        }
+        return users.add(c);
+    }
+
+    // Branch of saved data; "" (data from before branches) means the first branch
+    private static Branch branchNamed(String name) {
+        return name.isEmpty() ? branches.main() : branches.branch(name);
+    }
+
+    // Journal replay: records may repeat what is already loaded (customers.txt,
+    // an older base), so every case is idempotent. Customer records are
+    // applied by the users stage, everything else by the fleet stage.
+    private static void replayUsers(Journal.Record r) {
+        String[] f = r.fields;
+        switch (r.type) {
+            case CUSTOMER_ADDED:
+                addLoaded(new Customer(f[0], f[1], f[2], f[3], f[4]));
+                break;
+            case CUSTOMER_ID_CHANGED:
+                User moved = users.findByName(f[0]);
+                if (moved != null && !moved.getId().equals(f[2]) && users.findById(f[2]) == null) {
+                    users.changeId(moved, f[2]);
+                }
+                if (moved != null) reassignedIds.remove(moved); // already migrated in an earlier run
+                break;
+            case PASSWORD_CHANGED:
+                User changed = users.findByName(f[0]);
+                if (changed != null) changed.password = f[1];
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void replayFleet(Journal.Record r) {
+        String[] f = r.fields;
+        switch (r.type) {
+            case CAR_ADDED:
+                if (branches.find(f[0]) == null) {
+                    branches.add(branchNamed(f.length > 3 ? f[3] : ""), Car.create(f[0], f[1], f[2], r.price));
+                }
+                break;
+            case CAR_REMOVED:
+                branches.remove(f[0]);
+                break;
+            case RENTED:
+                Car rented = branches.find(f[0]);
+                long since = f.length > 2 ? Long.parseLong(f[2]) : 0; // older records have no start time
+                double rate = r.price > 0 ? r.price : Double.NaN;
+                if (rented != null && rented.restore(f[1], r.version, since, rate)) branches.sync(rented);
+                break;
+            case RETURNED:
+                Car returned = branches.find(f[0]);
+                if (returned != null && returned.restore(null, r.version, 0, Double.NaN)) branches.sync(returned);
+                if (f.length > 5) {
+                    ledger.restore(Long.parseLong(f[4]), f[0], f[5], f[1], Long.parseLong(f[2]),
+                            Long.parseLong(f[3]), r.price);
+                }
+                break;
+            case RESERVED:
+                Car reserved = branches.find(f[1]);
+                if (reserved != null) {
+                    reserved.branch.reservations.add(reserved, new Reservation(f[0], f[1], f[2], Long.parseLong(f[3]),
+                            Long.parseLong(f[4])), Long.MIN_VALUE);
+                }
+                break;
+            case RESERVATION_CANCELLED:
+                branches.cancelReservation(f[0]);
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Full state for journal compaction; also refreshes customers.txt
+    private static void writeCheckpoint() throws IOException {
+        long today = today();
+        List<Reservation> current = new ArrayList<>();
+        for (Branch b : branches.branches()) {
+            b.reservations.pruneBefore(today);
+            for (Reservation r : b.reservations.all()) {
+                if (r.toDay > today) current.add(r); // finished bookings aren't carried forward
+            }
+        }
+        StateSnapshot.write(SNAPSHOT_FILE, users, branches, current);
+        ledger.sync();
         saveCustomers();
     }
 }
@@ -192,8 +924,17 @@ public class CarRentalSystem extends JFrame {
     final Font BUTTON_FONT = new Font("Segoe UI", Font.BOLD, 14);
     final Font BODY_FONT = new Font("Segoe UI", Font.PLAIN, 13);
 
+    // Past this many changed cars in one batch a full table reload is cheaper
+    static final int MAX_ROW_UPDATES = 1000;
+    // Newest ledger rows shown on the admin Recent report tab
+    static final int REPORT_RECENT_ROWS = 500;
+    // Rows per page of search results
+    static final int PAGE_SIZE = 200;
+
     private CardLayout cardLayout = new CardLayout();
     private JPanel mainPanel = new JPanel(cardLayout);
+    // This window's login (see SessionManager); null when signed out
+    private volatile SessionManager.Session session;
 
     public CarRentalSystem() {
         setTitle("Car Rental Management Sys");
@@ -210,6 +951,30 @@ public class CarRentalSystem extends JFrame {
         cardLayout.show(mainPanel, "Login");
     }
 
+    // The signed-in user, for display and filtering; doesn't count as activity
+    private User signedIn() {
+        SessionManager.Session s = session;
+        return s == null ? null : s.user;
+    }
+
+    // The signed-in user for an action (EDT). An expired session goes back to
+    // the login screen and returns null.
+    private User activeUser() {
+        SessionManager.Session s = session;
+        if (s != null && RentalService.sessions.validate(s.token) != null) return s.user;
+        session = null;
+        cardLayout.show(mainPanel, "Login");
+        JOptionPane.showMessageDialog(this, "Your session has expired. Please sign in again.");
+        return null;
+    }
+
+    private void signOut() {
+        SessionManager.Session s = session;
+        session = null;
+        if (s != null) RentalService.logout(s.token);
+        cardLayout.show(mainPanel, "Login");
+    }
+
     // --- UTILS: Custom Button Factory ---
     private JButton createBtn(String text, Color bg) {
         JButton btn = new JButton(text);
@@ -222,60 +987,18 @@ public class CarRentalSystem extends JFrame {
         return btn;
     }
 
-    // Simple illustration panel for the login screen (original abstract design)
+    // Simple illustration panel for the login screen (original abstract design);
+    // drawn once per size into an image, see LoginArt
     class IllustrationPanel extends JPanel {
+        private final LoginArt art = new LoginArt(OFF_WHITE, DARK_BLUE, BRIGHT_BLUE, TITLE_FONT, SUBTITLE_FONT);
+
         public IllustrationPanel() {
-            setOpaque(false);
+            setOpaque(true); // the artwork covers every pixel, backdrop included
         }
 
         @Override
         protected void paintComponent(Graphics g) {
-            super.paintComponent(g);
-            Graphics2D g2d = (Graphics2D) g.create();
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-            int w = getWidth();
-            int h = getHeight();
-
-            // Gradient background
-            GradientPaint gp = new GradientPaint(0, 0, DARK_BLUE, w, h, BRIGHT_BLUE);
-            g2d.setPaint(gp);
-            g2d.fillRoundRect(20, 20, w - 40, h - 40, 40, 40);
-
-            // Abstract "car" shape
-            int carWidth = (int) (w * 0.55);
-            int carHeight = (int) (h * 0.22);
-            int carX = (w - carWidth) / 2;
-            int carY = (h - carHeight) / 2;
-
-            g2d.setColor(new Color(255, 255, 255, 30));
-            g2d.fillRoundRect(carX, carY, carWidth, carHeight, 40, 40);
-
-            g2d.setColor(new Color(255, 255, 255, 60));
-            g2d.fillOval(carX + (int)(carWidth * 0.15), carY + (int)(carHeight * 0.55), 26, 26);
-            g2d.fillOval(carX + (int)(carWidth * 0.65), carY + (int)(carHeight * 0.55), 26, 26);
-
-            // Tagline
-            g2d.setFont(TITLE_FONT);
-            g2d.setColor(Color.WHITE);
-            String title = "Car Rental Management System";
-            FontMetrics fm = g2d.getFontMetrics();
-            int tx = (w - fm.stringWidth(title)) / 2;
-            int ty = carY - 25;
-            g2d.drawString(title, tx, ty);
-
-            g2d.setFont(SUBTITLE_FONT);
-            g2d.setColor(new Color(245, 247, 250, 220));
-            String sub1 = "Curated cars.";
-            String sub2 = "Effortless journeys.";
-            int sub1x = (w - g2d.getFontMetrics().stringWidth(sub1)) / 2;
-            int sub2x = (w - g2d.getFontMetrics().stringWidth(sub2)) / 2;
-            int sub1y = carY + carHeight + 30;
-            int sub2y = sub1y + 22;
-            g2d.drawString(sub1, sub1x, sub1y);
-            g2d.drawString(sub2, sub2x, sub2y);
-
-            g2d.dispose();
+            art.paint(g, getWidth(), getHeight(), getGraphicsConfiguration());
         }
     }
 
@@ -283,6 +1006,8 @@ public class CarRentalSystem extends JFrame {
     class LoginPanel extends JPanel {
         JTextField userField = new JTextField(18);
         JPasswordField passField = new JPasswordField(18);
+        JLabel loadingLabel = new JLabel(" ");
+        JProgressBar loadingBar = new JProgressBar(0, Startup.Phase.READY.ordinal());
 
         public LoginPanel() {
             setLayout(new BorderLayout());
@@ -369,6 +1094,17 @@ public class CarRentalSystem extends JFrame {
             form.add(Box.createVerticalStrut(16));
             form.add(regBtn);
 
+            // Startup progress; sign-in works once customers are loaded
+            loadingLabel.setFont(BODY_FONT);
+            loadingLabel.setForeground(new Color(120, 129, 149));
+            loadingLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+            loadingBar.setAlignmentX(Component.CENTER_ALIGNMENT);
+            form.add(Box.createVerticalStrut(16));
+            form.add(loadingLabel);
+            form.add(Box.createVerticalStrut(6));
+            form.add(loadingBar);
+            RentalService.startup.listen(phase -> SwingUtilities.invokeLater(() -> showPhase(phase)));
+
             GridBagConstraints gbc = new GridBagConstraints();
             gbc.gridx = 0;
             gbc.gridy = 0;
@@ -378,6 +1114,32 @@ public class CarRentalSystem extends JFrame {
             add(rightWrapper, BorderLayout.EAST);
         }
 
+        private void showPhase(Startup.Phase phase) {
+            loadingBar.setValue(phase.ordinal());
+            if (phase == Startup.Phase.READY) {
+                loadingBar.setVisible(false);
+                List<String> failures = RentalService.startup.failures();
+                loadingLabel.setForeground(failures.isEmpty() ? new Color(120, 129, 149) : RED_ACCENT);
+                if (failures.isEmpty()) {
+                    loadingLabel.setText(" ");
+                } else {
+                    String what = RentalService.startup.aborted()
+                            ? "Data could not be loaded; read-only until restarted."
+                            : "Some services failed to start; see the log.";
+                    loadingLabel.setText("<html><div style='text-align:center;width:260px'>" + what + "<br>"
+                            + escapeHtml(failures.get(0)) + "</div></html>");
+                    loadingLabel.setToolTipText(String.join("\n", failures));
+                }
+                return;
+            }
+            boolean signInOpen = phase.compareTo(Startup.Phase.USERS) > 0;
+            loadingLabel.setText(phase.label + "..." + (signInOpen ? " (you can sign in)" : ""));
+        }
+
+        private String escapeHtml(String s) {
+            return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+        }
+
         private void attemptLogin(boolean adminLogin) {
             String u = userField.getText().trim();
             String p = new String(passField.getPassword());
@@ -387,25 +1149,35 @@ public class CarRentalSystem extends JFrame {
                 return;
             }
 
-            for (User user : RentalService.users) {
-                if (user.getName().equalsIgnoreCase(u) && user.checkPassword(p)) {
-                    if (adminLogin && !(user instanceof Admin)) {
-                        JOptionPane.showMessageDialog(this, "This account is not an admin account.");
-                        return;
-                    }
-                    if (!adminLogin && !(user instanceof Customer)) {
-                        JOptionPane.showMessageDialog(this, "Please use the Admin Login button for admin accounts.");
-                        return;
-                    }
-
-                    RentalService.currentUser = user;
-                    userField.setText("");
-                    passField.setText("");
+            long start = System.nanoTime();
+            Background.run(() -> RentalService.login(u, p), opened -> {
+                finishLogin(opened, adminLogin);
+                Metrics.UI_LOGIN.record(start, opened != null);
+            });
+        }
 
-                    if (user instanceof Admin) cardLayout.show(mainPanel, "Admin");
-                    else cardLayout.show(mainPanel, "Customer");
+        private void finishLogin(SessionManager.Session opened, boolean adminLogin) {
+            if (opened != null) {
+                User user = opened.user;
+                if (adminLogin && !(user instanceof Admin)) {
+                    RentalService.logout(opened.token);
+                    JOptionPane.showMessageDialog(this, "This account is not an admin account.");
+                    return;
+                }
+                if (!adminLogin && !(user instanceof Customer)) {
+                    RentalService.logout(opened.token);
+                    JOptionPane.showMessageDialog(this, "Please use the Admin Login button for admin accounts.");
                     return;
                 }
+
+                if (session != null) RentalService.logout(session.token); // signing in over another login
+                session = opened;
+                userField.setText("");
+                passField.setText("");
+
+                if (user instanceof Admin) cardLayout.show(mainPanel, "Admin");
+                else cardLayout.show(mainPanel, "Customer");
+                return;
             }
             JOptionPane.showMessageDialog(this, "Invalid credentials. Please try again.");
         }
@@ -441,9 +1213,20 @@ public class CarRentalSystem extends JFrame {
                  String pass = JOptionPane.showInputDialog(this, "Set a password:");
 
                  if (!name.isEmpty() && !contact.isEmpty() && !email.isEmpty() && pass != null && !pass.trim().isEmpty()) {
-                     Customer newCustomer = new Customer(name, pass.trim(), contact, email);
-                     RentalService.addCustomer(newCustomer);
-                     JOptionPane.showMessageDialog(this, "Account created! You can now login as customer.");
+                     String password = pass.trim();
+                     long start = System.nanoTime();
+                     // Hashing the password is deliberately slow, so the customer is built off the EDT too
+                     Background.run(() -> {
+                         Customer c = new Customer(name, password, contact, email);
+                         return RentalService.addCustomer(c);
+                     }, added -> {
+                         Metrics.UI_REGISTER.record(start, added);
+                         if (added) {
+                             JOptionPane.showMessageDialog(this, "Account created! You can now login as customer.");
+                         } else {
+                             JOptionPane.showMessageDialog(this, "That name is already registered. Please choose another.");
+                         }
+                     });
                  } else {
                      JOptionPane.showMessageDialog(this, "All fields are required.");
                  }
@@ -453,9 +1236,10 @@ public class CarRentalSystem extends JFrame {
 
     // --- SCREEN 2: ADMIN DASHBOARD ---
     class AdminDashboard extends JPanel {
-        DefaultTableModel fleetModel;
+        CarTableModel fleetModel;
         JTable fleetTable;
         JTextField brandF, modelF, priceF;
+        JComboBox<Branch> branchBox;
 
         public AdminDashboard() {
             setLayout(new BorderLayout());
@@ -470,10 +1254,14 @@ public class CarRentalSystem extends JFrame {
             title.setFont(SUBTITLE_FONT);
             
             JButton logout = createBtn("Logout", RED_ACCENT);
-            logout.addActionListener(e -> cardLayout.show(mainPanel, "Login"));
+            logout.addActionListener(e -> signOut());
+
+            JButton reports = createBtn("Reports", BRIGHT_BLUE);
+            reports.addActionListener(e -> showReports());
 
             JPanel rightTopBtns = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
             rightTopBtns.setOpaque(false);
+            rightTopBtns.add(reports);
             rightTopBtns.add(logout);
             
             top.add(title, BorderLayout.WEST);
@@ -481,12 +1269,15 @@ public class CarRentalSystem extends JFrame {
             add(top, BorderLayout.NORTH);
 
             // Center Content (Fleet Table)
-            String[] cols = {"ID", "Brand", "Model", "Price/Day", "Status", "Renter ID"};
-            fleetModel = new DefaultTableModel(cols, 0);
+            fleetModel = new CarTableModel(RentalService.branches::all, c -> !c.isRetired(),
+                    CarTableModel.Column.ID, CarTableModel.Column.BRANCH, CarTableModel.Column.BRAND,
+                    CarTableModel.Column.MODEL, CarTableModel.Column.PRICE_PER_DAY, CarTableModel.Column.STATUS,
+                    CarTableModel.Column.RENTER);
             fleetTable = new JTable(fleetModel);
             fleetTable.setFont(BODY_FONT);
             fleetTable.getTableHeader().setFont(BODY_FONT);
             fleetTable.setRowHeight(26);
+            CarCellRenderer.install(fleetTable);
             // Double-click row to view renter details
             fleetTable.addMouseListener(new MouseAdapter() {
                 @Override
@@ -506,6 +1297,9 @@ public class CarRentalSystem extends JFrame {
             modelF = new JTextField(10);
             priceF = new JTextField(8);
             
+            branchBox = new JComboBox<>(RentalService.branches.branches().toArray(new Branch[0]));
+
+            bot.add(new JLabel("Branch:")); bot.add(branchBox);
             bot.add(new JLabel("Brand:")); bot.add(brandF);
             bot.add(new JLabel("Model:")); bot.add(modelF);
             bot.add(new JLabel("Price:")); bot.add(priceF);
@@ -516,39 +1310,58 @@ public class CarRentalSystem extends JFrame {
             removeBtn.addActionListener(e -> removeSelectedCar());
             JButton viewRenterBtn = createBtn("View Renter Details", BRIGHT_BLUE);
             viewRenterBtn.addActionListener(e -> showRenterDetails());
+            JButton importBtn = createBtn("Import CSV...", DARK_BLUE);
+            importBtn.addActionListener(e -> importCsv());
             bot.add(addBtn);
             bot.add(removeBtn);
             bot.add(viewRenterBtn);
+            bot.add(importBtn);
             
             add(bot, BorderLayout.SOUTH);
             
-            // Refresh timer (Simulated live update)
+            // Full load when shown; after that, pushed changes update single rows
             addComponentListener(new java.awt.event.ComponentAdapter() {
-                public void componentShown(java.awt.event.ComponentEvent evt) { refreshTable(); }
+                public void componentShown(java.awt.event.ComponentEvent evt) { fleetModel.reload(); }
             });
+            RentalService.events.subscribe(new EdtCoalescer(this::applyChanges));
         }
 
-        private void refreshTable() {
-            fleetModel.setRowCount(0);
-            for (Car c : RentalService.fleet) {
-                String status = c.isAvailable() ? "Available" : "Rented";
-                String renter = c.getCurrentRenterId() == null ? "-" : c.getCurrentRenterId();
-                fleetModel.addRow(new Object[]{c.getCarId(), c.getBrand(), c.getModel(), "$" + c.getPrice(), status, renter});
+        private void applyChanges(EdtCoalescer.Batch batch) {
+            if (batch.reload) refreshBranches();
+            if (batch.reload || batch.cars.size() > MAX_ROW_UPDATES) {
+                fleetModel.reload();
+                return;
             }
+            for (Car c : batch.cars) fleetModel.refresh(c);
+        }
+
+        // Branches named only in saved data appear once the fleet has loaded
+        private void refreshBranches() {
+            List<Branch> all = RentalService.branches.branches();
+            if (all.size() == branchBox.getItemCount()) return;
+            Object selected = branchBox.getSelectedItem();
+            branchBox.setModel(new DefaultComboBoxModel<>(all.toArray(new Branch[0])));
+            if (selected != null) branchBox.setSelectedItem(selected);
         }
 
         private void addNewCar() {
+            if (activeUser() == null) return;
+            String b = brandF.getText();
+            String m = modelF.getText();
+            double p;
             try {
-                String b = brandF.getText();
-                String m = modelF.getText();
-                double p = Double.parseDouble(priceF.getText());
-                RentalService.addCar(b, m, p);
-                refreshTable();
-                brandF.setText(""); modelF.setText(""); priceF.setText("");
-                JOptionPane.showMessageDialog(this, "Vehicle added to fleet.");
-            } catch (Exception e) {
+                p = Double.parseDouble(priceF.getText());
+            } catch (NumberFormatException e) {
                 JOptionPane.showMessageDialog(this, "Please provide valid brand, model and price.");
+                return;
             }
+            Branch branch = (Branch) branchBox.getSelectedItem();
+            Background.run(() -> RentalService.addCar(b, m, p, branch), car -> {
+                brandF.setText(""); modelF.setText(""); priceF.setText("");
+                JOptionPane.showMessageDialog(this, "Vehicle added to fleet.");
+            }, error -> JOptionPane.showMessageDialog(this, error instanceof IllegalArgumentException
+                    ? "Please provide valid brand, model and price: " + error.getMessage()
+                    : "That didn't go through: " + error.getMessage()));
         }
 
         private void removeSelectedCar() {
@@ -557,11 +1370,7 @@ public class CarRentalSystem extends JFrame {
                 JOptionPane.showMessageDialog(this, "Select a vehicle to remove.");
                 return;
             }
-            String carId = (String) fleetModel.getValueAt(row, 0);
-            Car selected = RentalService.fleet.stream()
-                    .filter(c -> c.getCarId().equals(carId))
-                    .findFirst().orElse(null);
-            if (selected == null) return;
+            Car selected = fleetModel.carAt(row);
 
             if (!selected.isAvailable()) {
                 JOptionPane.showMessageDialog(this, "You can’t remove a car that is currently rented.");
@@ -572,33 +1381,120 @@ public class CarRentalSystem extends JFrame {
                     "Remove this vehicle from the fleet?",
                     "Confirm Removal",
                     JOptionPane.YES_NO_OPTION);
-            if (confirm == JOptionPane.YES_OPTION) {
-                RentalService.fleet.remove(selected);
-                refreshTable();
+            if (confirm == JOptionPane.YES_OPTION && activeUser() != null) {
+                Background.run(() -> RentalService.removeCar(selected.getCarId()), result -> {
+                    if (!result.ok()) {
+                        JOptionPane.showMessageDialog(this, "This vehicle was just rented and can’t be removed.");
+                    }
+                });
             }
         }
 
+        // Streams a cars or customers CSV in; the tables reload once at the end
+        private void importCsv() {
+            if (activeUser() == null) return;
+            String[] kinds = {"Cars", "Customers"};
+            int kind = JOptionPane.showOptionDialog(this, "What does the file contain?\n"
+                    + "Cars: brand,model,price    Customers: name,password,contact,email\n"
+                    + "(a header row may reorder columns and add an id column)", "Bulk Import",
+                    JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, kinds, kinds[0]);
+            if (kind < 0) return;
+            JFileChooser chooser = new JFileChooser(new File("."));
+            if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+            Path file = chooser.getSelectedFile().toPath();
+
+            JDialog progress = new JDialog(SwingUtilities.getWindowAncestor(this), "Importing " + file.getFileName());
+            JLabel rows = new JLabel("Starting...");
+            rows.setBorder(new EmptyBorder(20, 30, 20, 30));
+            progress.add(rows);
+            progress.pack();
+            progress.setLocationRelativeTo(this);
+            progress.setVisible(true);
+            Background.run(() -> BulkImport.run(kind == 0 ? BulkImport.Kind.CARS : BulkImport.Kind.CUSTOMERS, file,
+                    done -> SwingUtilities.invokeLater(() -> rows.setText(done + " rows processed"))), report -> {
+                progress.dispose();
+                StringBuilder sb = new StringBuilder(report.summary());
+                int shown = Math.min(20, report.samples.size());
+                if (shown > 0) sb.append("\n\nRejected (first ").append(shown).append("):");
+                for (int i = 0; i < shown; i++) sb.append("\n").append(report.samples.get(i));
+                JOptionPane.showMessageDialog(this, sb.toString(), "Import Finished", JOptionPane.INFORMATION_MESSAGE);
+            }, error -> {
+                progress.dispose();
+                JOptionPane.showMessageDialog(this, "Import failed: " + error.getMessage());
+            });
+        }
+
+        // Revenue and utilization from the ledger's running totals (no history scan)
+        private void showReports() {
+            Background.run(() -> RentalService.ledger.report(REPORT_RECENT_ROWS), report -> {
+                int fleetSize = Math.max(1, RentalService.branches.size());
+                JTabbedPane tabs = new JTabbedPane();
+                tabs.addTab("By Brand", reportTable(report.byBrand, "Brand", 0));
+                tabs.addTab("By Car", reportTable(report.byCar, "Car ID", 0));
+                tabs.addTab("By Customer", reportTable(report.byCustomer, "Customer ID", 0));
+                tabs.addTab("By Day", reportTable(report.byDay, "Day", fleetSize));
+                tabs.addTab("Recent", recentTable(report.recent));
+                JLabel summary = new JLabel(String.format("  %d rentals, total revenue $%.2f", report.rows, report.revenue));
+                JDialog dialog = new JDialog(SwingUtilities.getWindowAncestor(this), "Rental Reports");
+                dialog.add(summary, BorderLayout.NORTH);
+                dialog.add(tabs, BorderLayout.CENTER);
+                dialog.setSize(720, 480);
+                dialog.setLocationRelativeTo(this);
+                dialog.setVisible(true);
+            });
+        }
+
+        // fleetSize > 0 adds a utilization column: rented car time / fleet time that day
+        private JScrollPane reportTable(List<RentalLedger.Total> totals, String keyName, int fleetSize) {
+            if (fleetSize > 0) totals.sort((a, b) -> b.key.compareTo(a.key)); // days: newest first
+            else totals.sort((a, b) -> Double.compare(b.revenue, a.revenue));
+            String[] cols = fleetSize > 0
+                    ? new String[]{keyName, "Rentals", "Revenue", "Rented Days", "Utilization"}
+                    : new String[]{keyName, "Rentals", "Revenue", "Rented Days"};
+            Object[][] rows = new Object[totals.size()][];
+            for (int i = 0; i < rows.length; i++) {
+                RentalLedger.Total t = totals.get(i);
+                rows[i] = fleetSize > 0
+                        ? new Object[]{t.key, t.rentals, String.format("%.2f", t.revenue), String.format("%.1f", t.rentedDays()),
+                                String.format("%.1f%%", 100 * t.rentedDays() / fleetSize)}
+                        : new Object[]{t.key, t.rentals, String.format("%.2f", t.revenue), String.format("%.1f", t.rentedDays())};
+            }
+            JTable table = new JTable(rows, cols);
+            table.setFont(BODY_FONT);
+            table.setDefaultEditor(Object.class, null);
+            return new JScrollPane(table);
+        }
+
+        private JScrollPane recentTable(List<RentalLedger.Row> recent) {
+            String[] cols = {"Car ID", "Brand", "Customer ID", "From", "To", "Price/Day", "Charged"};
+            java.text.SimpleDateFormat time = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm");
+            Object[][] rows = new Object[recent.size()][];
+            for (int i = 0; i < rows.length; i++) {
+                RentalLedger.Row r = recent.get(i);
+                rows[i] = new Object[]{r.carId, r.brand, r.renterId, time.format(new java.util.Date(r.start)),
+                        time.format(new java.util.Date(r.end)), String.format("%.2f", r.pricePerDay),
+                        String.format("%.2f", r.amount)};
+            }
+            JTable table = new JTable(rows, cols);
+            table.setFont(BODY_FONT);
+            table.setDefaultEditor(Object.class, null);
+            return new JScrollPane(table);
+        }
+
         private void showRenterDetails() {
             int row = fleetTable.getSelectedRow();
             if (row == -1) {
                 JOptionPane.showMessageDialog(this, "Select a rented vehicle first.");
                 return;
             }
-            String status = (String) fleetModel.getValueAt(row, 4);
-            String renterId = (String) fleetModel.getValueAt(row, 5);
+            String renterId = fleetModel.carAt(row).getCurrentRenterId();
 
-            if (!"Rented".equalsIgnoreCase(status) || renterId == null || renterId.equals("-")) {
+            if (renterId == null) {
                 JOptionPane.showMessageDialog(this, "The selected vehicle is not currently rented.");
                 return;
             }
 
-            User found = null;
-            for (User u : RentalService.users) {
-                if (u.getId().equals(renterId)) {
-                    found = u;
-                    break;
-                }
-            }
+            User found = RentalService.users.findById(renterId);
 
             if (found == null || !(found instanceof Customer)) {
                 JOptionPane.showMessageDialog(this, "No customer details found for this renter ID.");
@@ -618,9 +1514,17 @@ public class CarRentalSystem extends JFrame {
 
     // --- SCREEN 3: CUSTOMER DASHBOARD ---
     class CustomerDashboard extends JPanel {
-        DefaultTableModel availModel, myRentalsModel;
+        CarTableModel availModel, myRentalsModel;
         JTabbedPane tabs;
         JLabel title;
+        JTextField fromF, toF, searchF, minPriceF, maxPriceF;
+        JComboBox<String> sortBox;
+        JLabel resultsLabel;
+        // Range the Rent tab is showing; read by the background reload
+        volatile LocalDate from = LocalDate.now(), to = from.plusDays(1);
+        // Current search; replaced (never modified) on every keystroke
+        volatile FleetSearch.Query query;
+        volatile int matches;
 
         public CustomerDashboard() {
             setLayout(new BorderLayout());
@@ -635,7 +1539,7 @@ public class CarRentalSystem extends JFrame {
             title.setFont(SUBTITLE_FONT);
             
             JButton logout = createBtn("Logout", RED_ACCENT);
-            logout.addActionListener(e -> cardLayout.show(mainPanel, "Login"));
+            logout.addActionListener(e -> signOut());
             
             top.add(title, BorderLayout.WEST);
             top.add(logout, BorderLayout.EAST);
@@ -644,27 +1548,95 @@ public class CarRentalSystem extends JFrame {
             // Tabs
             tabs = new JTabbedPane();
             
-            // Tab 1: Available Cars
+            // Tab 1: Available Cars (for the chosen dates)
             JPanel rentPanel = new JPanel(new BorderLayout());
-            availModel = new DefaultTableModel(new String[]{"ID", "Brand", "Model", "Price"}, 0);
+            availModel = new CarTableModel(this::bookable, this::isBookable,
+                    CarTableModel.Column.ID, CarTableModel.Column.BRANCH, CarTableModel.Column.BRAND,
+                    CarTableModel.Column.MODEL, CarTableModel.Column.PRICE);
+
+            JPanel dates = new JPanel(new FlowLayout(FlowLayout.LEFT));
+            fromF = new JTextField(from.toString(), 9);
+            toF = new JTextField(to.toString(), 9);
+            JButton searchBtn = createBtn("Search", BRIGHT_BLUE);
+            searchBtn.addActionListener(e -> searchAction());
+            dates.add(new JLabel("From (yyyy-mm-dd):"));
+            dates.add(fromF);
+            dates.add(new JLabel("To:"));
+            dates.add(toF);
+            dates.add(searchBtn);
+
+            // Brand / model search runs on every keystroke
+            JPanel filters = new JPanel(new FlowLayout(FlowLayout.LEFT));
+            searchF = new JTextField(14);
+            searchF.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+                public void insertUpdate(javax.swing.event.DocumentEvent e) { runSearch(0); }
+                public void removeUpdate(javax.swing.event.DocumentEvent e) { runSearch(0); }
+                public void changedUpdate(javax.swing.event.DocumentEvent e) { runSearch(0); }
+            });
+            minPriceF = new JTextField(4);
+            maxPriceF = new JTextField(4);
+            minPriceF.addActionListener(e -> runSearch(0));
+            maxPriceF.addActionListener(e -> runSearch(0));
+            sortBox = new JComboBox<>(new String[]{"Fleet order", "Price: low to high", "Price: high to low"});
+            sortBox.addActionListener(e -> runSearch(0));
+            filters.add(new JLabel("Search brand/model:"));
+            filters.add(searchF);
+            filters.add(new JLabel("$/day from"));
+            filters.add(minPriceF);
+            filters.add(new JLabel("to"));
+            filters.add(maxPriceF);
+            filters.add(sortBox);
+
+            JPanel criteria = new JPanel(new GridLayout(2, 1));
+            criteria.add(dates);
+            criteria.add(filters);
+            rentPanel.add(criteria, BorderLayout.NORTH);
             JTable rentTable = new JTable(availModel);
             rentTable.setFont(BODY_FONT);
             rentTable.getTableHeader().setFont(BODY_FONT);
             rentTable.setRowHeight(26);
+            CarCellRenderer.install(rentTable);
             
             JButton rentBtn = createBtn("Rent Selected Car", GREEN_ACCENT);
             rentBtn.addActionListener(e -> rentAction(rentTable));
-            
+            JButton waitBtn = createBtn("Join Waitlist", DARK_BLUE);
+            waitBtn.addActionListener(e -> waitlistAction());
+            JButton prevBtn = new JButton("< Prev");
+            JButton nextBtn = new JButton("Next >");
+            prevBtn.addActionListener(e -> runSearch(Math.max(0, query.offset - PAGE_SIZE)));
+            nextBtn.addActionListener(e -> {
+                if (query.offset + PAGE_SIZE < matches) runSearch(query.offset + PAGE_SIZE);
+            });
+            resultsLabel = new JLabel(" ");
+            availModel.addTableModelListener(e -> resultsLabel.setText(availModel.getRowCount() == 0 ? "No matching cars"
+                    : "Showing " + (query.offset + 1) + "-" + (query.offset + availModel.getRowCount())
+                    + " of " + matches));
+
+            JPanel pager = new JPanel(new FlowLayout(FlowLayout.LEFT));
+            pager.add(prevBtn);
+            pager.add(nextBtn);
+            pager.add(resultsLabel);
+            JPanel bottom = new JPanel(new BorderLayout());
+            JPanel actions = new JPanel(new GridLayout(1, 2));
+            actions.add(rentBtn);
+            actions.add(waitBtn);
+            bottom.add(pager, BorderLayout.NORTH);
+            bottom.add(actions, BorderLayout.SOUTH);
+
             rentPanel.add(new JScrollPane(rentTable), BorderLayout.CENTER);
-            rentPanel.add(rentBtn, BorderLayout.SOUTH);
+            rentPanel.add(bottom, BorderLayout.SOUTH);
+            query = buildQuery(0);
 
             // Tab 2: My Rentals
             JPanel myPanel = new JPanel(new BorderLayout());
-            myRentalsModel = new DefaultTableModel(new String[]{"ID", "Brand", "Model", "Price"}, 0);
+            myRentalsModel = new CarTableModel(this::myRentals, this::isMine,
+                    CarTableModel.Column.ID, CarTableModel.Column.BRANCH, CarTableModel.Column.BRAND,
+                    CarTableModel.Column.MODEL, CarTableModel.Column.PRICE);
             JTable myTable = new JTable(myRentalsModel);
             myTable.setFont(BODY_FONT);
             myTable.getTableHeader().setFont(BODY_FONT);
             myTable.setRowHeight(26);
+            CarCellRenderer.install(myTable);
             
             JButton returnBtn = createBtn("Return Car", DARK_BLUE);
             returnBtn.addActionListener(e -> returnAction(myTable));
@@ -674,35 +1646,126 @@ public class CarRentalSystem extends JFrame {
 
             tabs.addTab("Rent a Car", rentPanel);
             tabs.addTab("My Rentals", myPanel);
-            
-            tabs.addChangeListener(e -> refreshData());
             add(tabs, BorderLayout.CENTER);
             
             addComponentListener(new java.awt.event.ComponentAdapter() {
                 public void componentShown(java.awt.event.ComponentEvent evt) { refreshData(); }
             });
+            RentalService.events.subscribe(new EdtCoalescer(this::applyChanges));
+            // A car offered to whoever is signed in here; asked on the EDT
+            RentalService.events.subscribe(e -> {
+                User me = signedIn();
+                if (e.kind == RentalEvent.Kind.OFFER_OPENED && me != null && e.user != null
+                        && me.getId().equals(e.user.getId())) {
+                    SwingUtilities.invokeLater(() -> offerPrompt(e.car));
+                }
+            });
         }
 
+        // Full load when the dashboard is shown (possibly for a different user);
+        // after that, rent/return only touch the affected rows
         private void refreshData() {
-            if (RentalService.currentUser != null) {
-                title.setText("Welcome, " + RentalService.currentUser.getName());
-            }
-            // Populate Available Cars
-            availModel.setRowCount(0);
-            for (Car c : RentalService.fleet) {
-                if (c.isAvailable()) {
-                    availModel.addRow(new Object[]{c.getCarId(), c.getBrand(), c.getModel(), c.getPrice()});
-                }
+            User me = signedIn();
+            if (me != null) {
+                title.setText("Welcome, " + me.getName());
+                Waitlist.Offer waiting = RentalService.waitlist.offerFor(me.getId()); // made while signed out
+                if (waiting != null) SwingUtilities.invokeLater(() -> offerPrompt(waiting.car));
             }
+            if (from.isBefore(LocalDate.now())) {
+                from = LocalDate.now();
+                to = from.plusDays(1);
+                fromF.setText(from.toString());
+                toF.setText(to.toString());
+            }
+            runSearch(0);
+            myRentalsModel.reload();
+        }
 
-            // Populate My Rentals
-            myRentalsModel.setRowCount(0);
-            if (RentalService.currentUser != null) {
-                for (Car c : RentalService.fleet) {
-                    if (!c.isAvailable() && c.getCurrentRenterId().equals(RentalService.currentUser.getId())) {
-                        myRentalsModel.addRow(new Object[]{c.getCarId(), c.getBrand(), c.getModel(), c.getPrice()});
-                    }
-                }
+        private void searchAction() {
+            LocalDate f, t;
+            try {
+                f = LocalDate.parse(fromF.getText().trim());
+                t = LocalDate.parse(toF.getText().trim());
+            } catch (DateTimeParseException ex) {
+                JOptionPane.showMessageDialog(this, "Please enter dates as yyyy-mm-dd.");
+                return;
+            }
+            if (f.isBefore(LocalDate.now()) || !t.isAfter(f)) {
+                JOptionPane.showMessageDialog(this, "Choose a start date from today on and an end date after it.");
+                return;
+            }
+            from = f;
+            to = t;
+            runSearch(0);
+        }
+
+        // Rebuilds the query from the filter fields and loads that page
+        private void runSearch(int offset) {
+            query = buildQuery(offset);
+            availModel.reload();
+        }
+
+        private FleetSearch.Query buildQuery(int offset) {
+            FleetSearch.Query q = new FleetSearch.Query();
+            q.text = searchF.getText();
+            q.minPrice = price(minPriceF, 0);
+            q.maxPrice = price(maxPriceF, Double.POSITIVE_INFINITY);
+            q.from = from;
+            q.to = to;
+            q.sort = FleetSearch.Sort.values()[sortBox.getSelectedIndex()];
+            q.offset = offset;
+            q.limit = PAGE_SIZE;
+            return q;
+        }
+
+        private double price(JTextField field, double blank) {
+            try {
+                return field.getText().trim().isEmpty() ? blank : Double.parseDouble(field.getText().trim());
+            } catch (NumberFormatException e) {
+                return blank;
+            }
+        }
+
+        // One page of free cars for the range and filters, plus (on the first page)
+        // the user's own reservations due for pickup today
+        private List<Car> bookable() {
+            FleetSearch.Query q = query;
+            User me = signedIn();
+            FleetSearch.Page page = RentalService.searchOpenTo(q, null, me == null ? null : me.getId());
+            List<Car> cars = new ArrayList<>(page.cars);
+            matches = page.total;
+            if (me != null && q.offset == 0 && !q.from.isAfter(LocalDate.now())) {
+                cars.addAll(RentalService.pickups(me.getId()));
+            }
+            return cars;
+        }
+
+        private boolean isBookable(Car c) {
+            FleetSearch.Query q = query;
+            User me = signedIn();
+            return (RentalService.branches.matches(q, c) && RentalService.openTo(c, me == null ? null : me.getId()))
+                    || (me != null && !q.from.isAfter(LocalDate.now()) && RentalService.pickup(c, me.getId()) != null);
+        }
+
+        private List<Car> myRentals() {
+            User me = signedIn();
+            return me == null ? Collections.emptyList() : RentalService.branches.rentalsOf(me.getId());
+        }
+
+        private boolean isMine(Car c) {
+            User me = signedIn();
+            return me != null && me.getId().equals(c.getCurrentRenterId());
+        }
+
+        private void applyChanges(EdtCoalescer.Batch batch) {
+            if (batch.reload || batch.cars.size() > MAX_ROW_UPDATES) {
+                availModel.reload();
+                myRentalsModel.reload();
+                return;
+            }
+            for (Car c : batch.cars) {
+                availModel.refresh(c);
+                myRentalsModel.refresh(c);
             }
         }
 
@@ -710,13 +1773,70 @@ public class CarRentalSystem extends JFrame {
             int row = table.getSelectedRow();
             if (row == -1) return;
             
-            String carId = (String) availModel.getValueAt(row, 0);
-            Car selectedCar = RentalService.fleet.stream().filter(c -> c.getCarId().equals(carId)).findFirst().orElse(null);
-            
-            if (selectedCar != null) {
-                selectedCar.rent(RentalService.currentUser.getId());
-                JOptionPane.showMessageDialog(this, "Car Rented Successfully!");
-                refreshData();
+            Car car = availModel.carAt(row);
+            User me = activeUser();
+            if (me == null) return;
+            String userId = me.getId();
+            LocalDate f = from, t = to;
+            boolean startsToday = !f.isAfter(LocalDate.now());
+            Background.run(() -> RentalService.pickup(car, userId) != null
+                    ? RentalService.rentCar(car.getCarId(), userId)
+                    : RentalService.reserve(car.getCarId(), userId, f, t), result -> {
+                if (result.ok()) {
+                    JOptionPane.showMessageDialog(this, startsToday ? "Car Rented Successfully!"
+                            : "Car reserved from " + f + " to " + t + ".");
+                } else {
+                    JOptionPane.showMessageDialog(this, "Sorry, this car is no longer available for those dates.");
+                }
+            }, err -> JOptionPane.showMessageDialog(this, err.getMessage()));
+        }
+
+        // Waits for a brand/model, prefilled from the search box
+        private void waitlistAction() {
+            User me = activeUser();
+            if (me == null) return;
+            String[] words = searchF.getText().trim().split("\\s+", 2);
+            JTextField brandF = new JTextField(words[0], 12);
+            JTextField modelF = new JTextField(words.length > 1 ? words[1] : "", 12);
+            JPanel form = new JPanel(new GridLayout(2, 2, 5, 5));
+            form.add(new JLabel("Brand:"));
+            form.add(brandF);
+            form.add(new JLabel("Model:"));
+            form.add(modelF);
+            if (JOptionPane.showConfirmDialog(this, form, "Join Waitlist", JOptionPane.OK_CANCEL_OPTION)
+                    != JOptionPane.OK_OPTION) {
+                return;
+            }
+            String userId = me.getId(), brand = brandF.getText(), model = modelF.getText();
+            Background.run(() -> RentalService.joinWaitlist(userId, brand, model), w -> {
+                if (RentalService.waitlist.offerFor(userId) == null) {
+                    int ahead = RentalService.waitlist.position(w);
+                    JOptionPane.showMessageDialog(this, "You're on the waitlist for " + w.describe() + ". "
+                            + (ahead == 0 ? "You're next in line." : ahead + " ahead of you.")
+                            + "\nWe'll offer you the first one that comes free.");
+                }
+            }, err -> JOptionPane.showMessageDialog(this, err.getMessage()));
+        }
+
+        // A car came free for this customer: rent it now or let it go to the next in line
+        private void offerPrompt(Car car) {
+            User me = signedIn();
+            if (me == null) return;
+            Waitlist.Offer offer = RentalService.waitlist.offerFor(me.getId());
+            if (offer == null || offer.car != car) return; // already claimed, declined or expired
+            String until = LocalTime.now()
+                    .plusSeconds(Math.max(0, (offer.expiresAt - System.currentTimeMillis()) / 1000))
+                    .withNano(0).toString();
+            int answer = JOptionPane.showConfirmDialog(this, "A " + car.getBrand() + " " + car.getModel()
+                    + " (" + car.getCarId() + ") is free and held for you until " + until + ".\nRent it now?",
+                    "Your car is ready", JOptionPane.YES_NO_OPTION);
+            String userId = me.getId();
+            if (answer == JOptionPane.YES_OPTION) {
+                Background.run(() -> RentalService.rentCar(car.getCarId(), userId), result ->
+                        JOptionPane.showMessageDialog(this, result.ok() ? "Car Rented Successfully!"
+                                : "Sorry, the hold on this car has ended."));
+            } else {
+                Background.run(() -> RentalService.declineOffer(userId, car.getCarId()), declined -> { });
             }
         }
 
@@ -724,18 +1844,65 @@ public class CarRentalSystem extends JFrame {
             int row = table.getSelectedRow();
             if (row == -1) return;
             
-            String carId = (String) myRentalsModel.getValueAt(row, 0);
-            Car selectedCar = RentalService.fleet.stream().filter(c -> c.getCarId().equals(carId)).findFirst().orElse(null);
-            
-            if (selectedCar != null) {
-                selectedCar.returnCar();
-                JOptionPane.showMessageDialog(this, "Car Returned. Thank you!");
-                refreshData();
-            }
+            Car car = myRentalsModel.carAt(row);
+            User me = activeUser();
+            if (me == null) return;
+            String userId = me.getId();
+            Background.run(() -> RentalService.returnCar(car.getCarId(), userId), result -> {
+                if (result.ok()) {
+                    JOptionPane.showMessageDialog(this, "Car Returned. Thank you!");
+                } else {
+                    JOptionPane.showMessageDialog(this, "This car is not rented under your account.");
+                }
+            });
         }
     }
 
-    public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> new CarRentalSystem().setVisible(true));
+    // Usage: java CarRentalSystem [--headless] [--api] [--port N]
+    //   --headless  serve the HTTP API only, no window
+    //   --api       serve the HTTP API next to the window (same data)
+    //   --load-test [options]  simulated customers on scratch data (see LoadTest)
+    public static void main(String[] args) throws Exception {
+        boolean headless = false, api = false;
+        int port = 8080;
+        List<String[]> imports = new ArrayList<>(); // {kind, file}
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--headless": headless = true; break;
+                case "--api": api = true; break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--import-cars": imports.add(new String[]{"CARS", args[++i]}); break;
+                case "--import-customers": imports.add(new String[]{"CUSTOMERS", args[++i]}); break;
+                case "--load-test": // the rest of the line is LoadTest's
+                    LoadTest.main(Arrays.copyOfRange(args, i + 1, args.length));
+                    return;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        // Loading runs in the background; the login screen shows its progress
+        RentalService.startup.start();
+        boolean window = !headless && (imports.isEmpty() || api); // import-only runs exit when done
+        if (window) {
+            Background.watchEdt(Long.getLong("rental.edt.stallMs", 100));
+            SwingUtilities.invokeLater(() -> new CarRentalSystem().setVisible(true));
+        }
+        if (!imports.isEmpty()) RentalService.ready(); // imports need the saved branches and ids
+        for (String[] job : imports) {
+            BulkImport.Report report = BulkImport.run(BulkImport.Kind.valueOf(job[0]), Paths.get(job[1]), null);
+            System.out.println(job[1] + ": " + report.summary());
+            for (String reject : report.samples) System.out.println("  rejected " + reject);
+            if (report.rejected > report.samples.size()) {
+                System.out.println("  ... and " + (report.rejected - report.samples.size()) + " more");
+            }
+        }
+        // Import-only runs exit once the data is on disk
+        if (!imports.isEmpty() && !headless && !api) System.exit(0);
+        if (headless || api) {
+            RentalService.ready();
+            HttpApi.start(port);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,179 @@
+import javax.swing.JTable;
+import javax.swing.SwingConstants;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.Color;
+import java.awt.Component;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// ===========================
+// LIVE FLEET TABLE MODEL
+// ===========================
+// Rows are Car references; cells are read straight from the car, so nothing
+// is copied into Object[] rows. A table shows the cars a predicate accepts
+// (e.g. "available" or "rented by me"); after a car changes, refresh(car)
+// inserts, updates or deletes just that one row. Prices come from the
+// PriceBook current when the rows were loaded, so a table never mixes two
+// pricing passes; a new book arrives as a PRICES_UPDATED reload. A rented
+// car shows the rate locked in when it was rented. Price texts
+// are formatted once per car and reused by every paint. Swing (EDT) use only.
+class CarTableModel extends AbstractTableModel {
+
+    enum Column {
+        ID("ID"), BRANCH("Branch"), BRAND("Brand"), MODEL("Model"), PRICE("Price"), PRICE_PER_DAY("Price/Day"),
+        STATUS("Status"), RENTER("Renter ID");
+
+        final String header;
+
+        Column(String header) { this.header = header; }
+
+        boolean isPrice() { return this == PRICE || this == PRICE_PER_DAY; }
+
+        // Non-price cells only; prices come from the model's pinned book
+        Object value(Car c) {
+            switch (this) {
+                case ID: return c.getCarId();
+                case BRANCH: return c.branch == null ? "-" : c.branch.name;
+                case BRAND: return c.getBrand();
+                case MODEL: return c.getModel();
+                case STATUS: return c.isAvailable() ? "Available" : "Rented";
+                case RENTER:
+                    String renter = c.getCurrentRenterId();
+                    return renter == null ? "-" : renter;
+                default:
+                    throw new IllegalStateException(this + " is read through CarTableModel");
+            }
+        }
+    }
+
+    private final Column[] columns;
+    private final Supplier<List<Car>> source;
+    private final Predicate<Car> belongs;
+    private final List<Car> rows = new ArrayList<>();
+    private final Map<Car, Integer> rowOf = new IdentityHashMap<>();
+    private final Map<Car, PriceText> priceText = new IdentityHashMap<>();
+    private PriceBook book = PricingEngine.current();
+    private int reloads;
+
+    // A car's price as shown in the PRICE and PRICE_PER_DAY columns
+    private static final class PriceText {
+        final double price;
+        final String plain, perDay;
+
+        PriceText(double price) {
+            this.price = price;
+            this.plain = String.valueOf(price);
+            this.perDay = "$" + price;
+        }
+    }
+
+    CarTableModel(Supplier<List<Car>> source, Predicate<Car> belongs, Column... columns) {
+        this.source = source;
+        this.belongs = belongs;
+        this.columns = columns;
+    }
+
+    // Full rebuild from the source; only for first show or a new user.
+    // The source is scanned off the EDT and the rows are swapped in after.
+    // Reloads can overlap (e.g. one per keystroke); only the latest one lands.
+    void reload() {
+        int generation = ++reloads;
+        Background.run(source::get, cars -> {
+            if (generation == reloads) setRows(cars);
+        });
+    }
+
+    void setRows(List<Car> cars) {
+        book = PricingEngine.current();
+        rows.clear();
+        rowOf.clear();
+        priceText.clear();
+        for (Car c : cars) {
+            rowOf.put(c, rows.size());
+            rows.add(c);
+        }
+        fireTableDataChanged();
+    }
+
+    // Re-evaluates one car and touches only its row
+    void refresh(Car car) {
+        Integer row = rowOf.get(car);
+        boolean wanted = belongs.test(car);
+        if (row == null) {
+            if (!wanted) return;
+            int at = rows.size();
+            rowOf.put(car, at);
+            rows.add(car);
+            fireTableRowsInserted(at, at);
+        } else if (wanted) {
+            fireTableRowsUpdated(row, row);
+        } else {
+            rows.remove((int) row);
+            rowOf.remove(car);
+            priceText.remove(car);
+            for (int i = row; i < rows.size(); i++) rowOf.put(rows.get(i), i);
+            fireTableRowsDeleted(row, row);
+        }
+    }
+
+    Car carAt(int row) { return rows.get(row); }
+
+    Column column(int modelColumn) { return columns[modelColumn]; }
+
+    @Override
+    public int getRowCount() { return rows.size(); }
+
+    @Override
+    public int getColumnCount() { return columns.length; }
+
+    @Override
+    public String getColumnName(int column) { return columns[column].header; }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Car car = rows.get(row);
+        Column col = columns[column];
+        if (!col.isPrice()) return col.value(car);
+        double locked = car.booking().rate;
+        double price = Double.isNaN(locked) ? book.priceOf(car) : locked;
+        PriceText text = priceText.get(car);
+        if (text == null || text.price != price) {
+            text = new PriceText(price);
+            priceText.put(car, text);
+        }
+        return col == Column.PRICE ? text.plain : text.perDay;
+    }
+}
+
+// Cell renderer for CarTableModel tables. Values arrive as ready-made
+// strings, so a cell is setText plus colors picked from constants: prices
+// right-aligned, status tinted. Rendering is timed under ui.paint.cell.
+class CarCellRenderer extends DefaultTableCellRenderer {
+    private static final Color AVAILABLE = new Color(46, 139, 87);
+    private static final Color RENTED = new Color(235, 87, 87);
+
+    static void install(JTable table) {
+        table.setDefaultRenderer(Object.class, new CarCellRenderer());
+    }
+
+    @Override
+    public Component getTableCellRendererComponent(JTable table, Object value, boolean selected, boolean focused,
+                                                   int row, int column) {
+        long start = System.nanoTime();
+        super.getTableCellRendererComponent(table, value, selected, focused, row, column);
+        CarTableModel.Column col = ((CarTableModel) table.getModel()).column(table.convertColumnIndexToModel(column));
+        setHorizontalAlignment(col.isPrice() ? SwingConstants.RIGHT : SwingConstants.LEFT);
+        if (!selected) {
+            // Also resets the color the previous cell left behind
+            setForeground(col != CarTableModel.Column.STATUS ? table.getForeground()
+                    : "Available".equals(value) ? AVAILABLE : RENTED);
+        }
+        Metrics.UI_PAINT_CELL.record(start);
+        return this;
+    }
+}
@@ -0,0 +1,581 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+// ===========================
+// COLUMNAR FLEET (large fleets)
+// ===========================
+// Fleet storage with no object per car, for fleets in the millions. A car is
+// a row number; its fields live in chunked primitive columns (the layout of
+// RentalLedger, so growing never copies old rows):
+//   ids        long     the number in "V<n>"; any other id is dictionary-coded
+//                       and stored negated (-code - 1)
+//   prices     double   list price
+//   brands     int      dictionary codes; "Toyota" is stored once, not per car
+//   models     int
+//   renters    int      dictionary code of the renter id, FREE or RETIRED
+//   versions   long     booking version * 2, plus 1 while a booking change is
+//                       being written
+//   since      long     when the current rental began (Car.Booking.since)
+//   rates      double   rate locked in for it (Car.Booking.rate)
+// plus bitsets for live rows and available rows, and an open-addressing
+// id -> row index for lookups by id (no boxed keys). Scans such as "available
+// under $80" read two or three dense arrays instead of chasing a pointer per
+// car (RentalBenchmarks fleet.scan.columnar and --footprint).
+//
+// With -Drental.fleet.storage=columnar, Car.create appends every car to one
+// shared store and returns a RowCar, a view holding just the store and the
+// row. Its getters read the columns and its bookings run here, with the same
+// rules as a car's own Booking field: the versions cell is the row's lock
+// word. A writer claims it by CAS from even to odd, writes renter, since and
+// rate, then releases it as the next even version. booking(row) retries while
+// the word is odd or moved under it, so it never sees half a change. Cars
+// never share a lock word; the bitset words, 64 rows each, change by atomic
+// or/and. Rows are never reused, so a view of a removed car still reads its
+// own row.
+//
+// Adding and removing rows takes the store lock.
+class ColumnarFleet {
+    static final int FREE = -1, RETIRED = -2; // renters cell of a car nobody has
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK = 1 << CHUNK_BITS;
+    private static final long NO_KEY = Long.MIN_VALUE;
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle DOUBLES = MethodHandles.arrayElementVarHandle(double[].class);
+
+    private volatile long[][] ids = new long[0][];
+    private volatile double[][] prices = new double[0][];
+    private volatile int[][] brands = new int[0][];
+    private volatile int[][] models = new int[0][];
+    private volatile int[][] renters = new int[0][];
+    private volatile long[][] versions = new long[0][];
+    private volatile long[][] since = new long[0][];
+    private volatile double[][] rates = new double[0][];
+    private volatile long[][] liveBits = new long[0][];
+    private volatile long[][] availableBits = new long[0][];
+    private volatile int size;   // rows handed out, removed ones included
+    private volatile int count;  // live rows
+
+    private final Dictionary brandNames = new Dictionary();
+    private final Dictionary modelNames = new Dictionary();
+    private final Dictionary renterIds = new Dictionary();
+    private final Dictionary otherIds = new Dictionary(); // car ids not of the form V<n>
+    private final IdIndex rowOfId = new IdIndex();
+
+    // ---- rows ----
+
+    // A row found by find(carId); throws on a duplicate id
+    synchronized int add(String carId, String brand, String model, double price) {
+        long key = idKey(carId, true);
+        if (rowOfId.get(key) >= 0) throw new IllegalArgumentException("Duplicate car id: " + carId);
+        int row = append(key, brand, model, price);
+        rowOfId.put(key, row);
+        return row;
+    }
+
+    int add(Car car) {
+        return add(car.getCarId(), car.getBrand(), car.getModel(), car.getListPrice());
+    }
+
+    // A row for a RowCar. Its id is not indexed: cars are looked up through
+    // BranchRouter, which also rejects duplicates.
+    synchronized int append(String carId, String brand, String model, double price) {
+        return append(idKey(carId, true), brand, model, price);
+    }
+
+    private int append(long key, String brand, String model, double price) {
+        int row = size;
+        int chunk = row >>> CHUNK_BITS, at = row & (CHUNK - 1);
+        if (chunk == ids.length) grow();
+        ids[chunk][at] = key;
+        prices[chunk][at] = price;
+        brands[chunk][at] = brandNames.code(brand);
+        models[chunk][at] = modelNames.code(model);
+        renters[chunk][at] = FREE;
+        rates[chunk][at] = Double.NaN;
+        setBit(liveBits, row, true);
+        setBit(availableBits, row, true);
+        count++;
+        size = row + 1; // published last: scans read size first
+        return row;
+    }
+
+    // A Car reading and booking through this row
+    Car view(int row) {
+        return new RowCar(this, row);
+    }
+
+    // Row of a live car added with add(), or -1
+    int find(String carId) {
+        long key = idKey(carId, false);
+        return key == NO_KEY ? -1 : rowOfId.get(key);
+    }
+
+    // Only free cars leave the fleet, and leave it retired; false if the car
+    // is out or unknown
+    synchronized boolean remove(String carId) {
+        int row = find(carId);
+        if (row < 0 || !retire(row)) return false;
+        setBit(liveBits, row, false);
+        rowOfId.remove(idKey(carId, false));
+        count--;
+        return true;
+    }
+
+    // ---- bookings (same rules as Car.rent / returnCar / retire / restore) ----
+
+    // New booking version, or -1 if the car wasn't free
+    long rent(int row, String renterId, long since, double rate) {
+        int code = renterIds.code(renterId);
+        long word = lock(row);
+        if (renterCode(row) != FREE) {
+            unlock(row, word);
+            return -1;
+        }
+        write(row, code, since, rate);
+        setBit(availableBits, row, false);
+        unlock(row, word + 2);
+        return (word >>> 1) + 1;
+    }
+
+    // The rental it ended (the new version is one higher), or null if
+    // renterId doesn't have the car
+    Car.Booking returnCar(int row, String renterId) {
+        int code = renterIds.find(renterId);
+        if (code < 0) return null;
+        long word = lock(row);
+        if (renterCode(row) != code) {
+            unlock(row, word);
+            return null;
+        }
+        int chunk = row >>> CHUNK_BITS, at = row & (CHUNK - 1);
+        Car.Booking ended = new Car.Booking(renterId, word >>> 1, false, since[chunk][at], rates[chunk][at]);
+        write(row, FREE, 0, Double.NaN);
+        setBit(availableBits, row, true);
+        unlock(row, word + 2);
+        return ended;
+    }
+
+    // Takes a free car out of service for good
+    boolean retire(int row) {
+        long word = lock(row);
+        if (renterCode(row) != FREE) {
+            unlock(row, word);
+            return false;
+        }
+        write(row, RETIRED, 0, Double.NaN);
+        setBit(availableBits, row, false);
+        unlock(row, word + 2);
+        return true;
+    }
+
+    // Replay: adopt a logged booking unless a newer one is already in place
+    boolean restore(int row, String renterId, long version, long since, double rate) {
+        int code = renterId == null ? FREE : renterIds.code(renterId);
+        long word = lock(row);
+        if (renterCode(row) == RETIRED || word >>> 1 >= version) {
+            unlock(row, word);
+            return false;
+        }
+        write(row, code, since, rate);
+        setBit(availableBits, row, code == FREE);
+        unlock(row, version << 1);
+        return true;
+    }
+
+    // The row's booking as one consistent snapshot
+    Car.Booking booking(int row) {
+        int chunk = row >>> CHUNK_BITS, at = row & (CHUNK - 1);
+        long[] lockWords = versions[chunk];
+        for (int spins = 0; ; spins++) {
+            long word = (long) LONGS.getAcquire(lockWords, at);
+            if ((word & 1) == 0) {
+                int code = (int) INTS.getOpaque(renters[chunk], at);
+                long began = (long) LONGS.getOpaque(since[chunk], at);
+                double rate = (double) DOUBLES.getOpaque(rates[chunk], at);
+                VarHandle.acquireFence();
+                if ((long) LONGS.getOpaque(lockWords, at) == word) {
+                    // decoded only once validated: a torn code may not be in the dictionary yet
+                    return new Car.Booking(code >= 0 ? renterIds.value(code) : null, word >>> 1,
+                            code == RETIRED, began, rate);
+                }
+            }
+            backOff(spins);
+        }
+    }
+
+    // ---- fields ----
+
+    String carId(int row) {
+        long key = ids[row >>> CHUNK_BITS][row & (CHUNK - 1)];
+        return key >= 0 ? "V" + key : otherIds.value((int) (-key - 1));
+    }
+
+    String brand(int row) { return brandNames.value(brands[row >>> CHUNK_BITS][row & (CHUNK - 1)]); }
+
+    String model(int row) { return modelNames.value(models[row >>> CHUNK_BITS][row & (CHUNK - 1)]); }
+
+    double price(int row) { return prices[row >>> CHUNK_BITS][row & (CHUNK - 1)]; }
+
+    boolean isAvailable(int row) { return renterCode(row) == FREE; }
+
+    boolean isRetired(int row) { return renterCode(row) == RETIRED; }
+
+    boolean isLive(int row) { return bit(liveBits, row); }
+
+    String renterId(int row) {
+        int code = renterCode(row);
+        return code < 0 ? null : renterIds.value(code);
+    }
+
+    // ---- scans ----
+
+    int size() { return count; }
+
+    int slotCount() { return size; }
+
+    int availableCount() {
+        int end = size, total = 0;
+        long[][] bits = availableBits;
+        for (int w = 0; w < (end + 63) >>> 6; w++) total += Long.bitCount(word(bits, w));
+        return total;
+    }
+
+    // Rows of available cars priced within [min, max], in row order. Walks one
+    // chunk at a time: the availability words pick the rows, the price column
+    // of the same chunk filters them.
+    int[] availableWithin(double min, double max) {
+        int end = size;
+        long[][] bits = availableBits;
+        double[][] price = prices;
+        int[] out = new int[64];
+        int n = 0;
+        for (int c = 0; c < bits.length && (c << CHUNK_BITS) < end; c++) {
+            long[] words = bits[c];
+            double[] p = price[c];
+            int base = c << CHUNK_BITS;
+            int lastWord = Math.min(words.length, (end - base + 63) >>> 6);
+            for (int w = 0; w < lastWord; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    int at = (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    double v = p[at];
+                    if (v >= min && v <= max) {
+                        if (n == out.length) out = Arrays.copyOf(out, n * 2);
+                        out[n++] = base + at;
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // Rows rented by renterId (a scan of one int column)
+    List<Integer> rentalsOf(String renterId) {
+        int code = renterIds.find(renterId);
+        List<Integer> out = new ArrayList<>();
+        if (code < 0) return out;
+        int end = size;
+        int[][] col = renters;
+        for (int row = 0; row < end; row++) {
+            if (col[row >>> CHUNK_BITS][row & (CHUNK - 1)] == code) out.add(row);
+        }
+        return out;
+    }
+
+    Cursor cursor() { return new Cursor(); }
+
+    // Walks live rows in order without allocating; read fields through the fleet
+    // (fleet.price(cursor.row()) ...)
+    final class Cursor {
+        private final int end = size;
+        private int row = -1;
+
+        boolean next() {
+            while (++row < end) {
+                if (bit(liveBits, row)) return true;
+            }
+            return false;
+        }
+
+        int row() { return row; }
+    }
+
+    // ---- internals ----
+
+    private int renterCode(int row) {
+        return (int) INTS.getAcquire(renters[row >>> CHUNK_BITS], row & (CHUNK - 1));
+    }
+
+    // Claims the row's booking cells; returns the (even) word it held
+    private long lock(int row) {
+        long[] lockWords = versions[row >>> CHUNK_BITS];
+        int at = row & (CHUNK - 1);
+        for (int spins = 0; ; spins++) {
+            long word = (long) LONGS.getAcquire(lockWords, at);
+            if ((word & 1) == 0 && LONGS.compareAndSet(lockWords, at, word, word | 1)) return word;
+            backOff(spins);
+        }
+    }
+
+    // Releases the row at word: the one lock() returned if nothing changed,
+    // else the new version * 2
+    private void unlock(int row, long word) {
+        LONGS.setRelease(versions[row >>> CHUNK_BITS], row & (CHUNK - 1), word);
+    }
+
+    // Caller holds the row's lock word; the renter goes last so a reader of
+    // the renter alone (isAvailable, renterId) sees a whole booking
+    private void write(int row, int renter, long began, double rate) {
+        int chunk = row >>> CHUNK_BITS, at = row & (CHUNK - 1);
+        LONGS.setOpaque(since[chunk], at, began);
+        DOUBLES.setOpaque(rates[chunk], at, rate);
+        INTS.setRelease(renters[chunk], at, renter);
+    }
+
+    private static void backOff(int spins) {
+        if (spins < 64) Thread.onSpinWait();
+        else Thread.yield();
+    }
+
+    // Non-negative for V<n> ids, negative dictionary code for anything else;
+    // NO_KEY for an unknown other id when assign is false
+    private long idKey(String carId, boolean assign) {
+        if (carId.length() > 1 && carId.length() <= 19 && carId.charAt(0) == 'V') {
+            long n = 0;
+            boolean digits = carId.charAt(1) != '0' || carId.length() == 2;
+            for (int i = 1; i < carId.length() && digits; i++) {
+                char ch = carId.charAt(i);
+                if (ch < '0' || ch > '9') digits = false;
+                else n = n * 10 + (ch - '0');
+            }
+            if (digits && n >= 0) return n;
+        }
+        int code = assign ? otherIds.code(carId) : otherIds.find(carId);
+        return code < 0 ? NO_KEY : -(long) code - 1;
+    }
+
+    private static boolean bit(long[][] bits, int row) {
+        long[] chunk = bits[row >>> CHUNK_BITS];
+        return (chunk[(row & (CHUNK - 1)) >>> 6] & (1L << row)) != 0;
+    }
+
+    // Atomic on the word, which 63 other rows share
+    private static void setBit(long[][] bits, int row, boolean on) {
+        long[] chunk = bits[row >>> CHUNK_BITS];
+        int w = (row & (CHUNK - 1)) >>> 6;
+        if (on) LONGS.getAndBitwiseOr(chunk, w, 1L << row);
+        else LONGS.getAndBitwiseAnd(chunk, w, ~(1L << row));
+    }
+
+    private static long word(long[][] bits, int w) {
+        int chunk = w >>> (CHUNK_BITS - 6);
+        return chunk < bits.length ? bits[chunk][w & ((CHUNK >>> 6) - 1)] : 0;
+    }
+
+    private void grow() {
+        int n = ids.length + 1;
+        long[][] i = Arrays.copyOf(ids, n);
+        double[][] p = Arrays.copyOf(prices, n), rt = Arrays.copyOf(rates, n);
+        int[][] b = Arrays.copyOf(brands, n), m = Arrays.copyOf(models, n), r = Arrays.copyOf(renters, n);
+        long[][] v = Arrays.copyOf(versions, n), s = Arrays.copyOf(since, n);
+        long[][] live = Arrays.copyOf(liveBits, n), avail = Arrays.copyOf(availableBits, n);
+        i[n - 1] = new long[CHUNK];
+        p[n - 1] = new double[CHUNK];
+        rt[n - 1] = new double[CHUNK];
+        b[n - 1] = new int[CHUNK];
+        m[n - 1] = new int[CHUNK];
+        r[n - 1] = new int[CHUNK];
+        v[n - 1] = new long[CHUNK];
+        s[n - 1] = new long[CHUNK];
+        live[n - 1] = new long[CHUNK >>> 6];
+        avail[n - 1] = new long[CHUNK >>> 6];
+        ids = i;
+        prices = p;
+        brands = b;
+        models = m;
+        renters = r;
+        versions = v;
+        since = s;
+        rates = rt;
+        liveBits = live;
+        availableBits = avail;
+    }
+
+    // id key -> row, linear probing over an int[] of rows; the key of a row is
+    // read back from the ids column, so the index adds 4-8 bytes per car, not a
+    // boxed entry. Writers hold the store lock and take the write lock; readers
+    // try an optimistic read first, so lookups during bookings don't block each
+    // other.
+    private final class IdIndex {
+        private static final int EMPTY = -1, GONE = -2;
+        private final StampedLock lock = new StampedLock();
+        private int[] table = newTable(1 << 10);
+        private int used; // live and GONE slots
+        private int live;
+
+        int get(long key) {
+            long stamp = lock.tryOptimisticRead();
+            int row = lookup(key);
+            if (lock.validate(stamp)) return row;
+            stamp = lock.readLock();
+            try {
+                return lookup(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        // The row's key must already be in the ids column
+        void put(long key, int row) {
+            long stamp = lock.writeLock();
+            try {
+                if ((used + 1) * 4L > table.length * 3L) {
+                    rehash(live * 2 >= table.length ? table.length * 2 : table.length); // else just clear GONEs
+                }
+                int i = slot(key, table.length);
+                while (table[i] != EMPTY) i = (i + 1) & (table.length - 1);
+                table[i] = row;
+                used++;
+                live++;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        void remove(long key) {
+            long stamp = lock.writeLock();
+            try {
+                int[] t = table;
+                for (int i = slot(key, t.length); t[i] != EMPTY; i = (i + 1) & (t.length - 1)) {
+                    if (t[i] >= 0 && keyOf(t[i]) == key) {
+                        t[i] = GONE;
+                        live--;
+                        return;
+                    }
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        // Under an optimistic read the table may be mid-change; the probe is
+        // bounded so a torn view ends and fails validation instead of looping
+        private int lookup(long key) {
+            int[] t = table;
+            int i = slot(key, t.length);
+            for (int probes = 0; probes < t.length && t[i] != EMPTY; probes++) {
+                int row = t[i];
+                if (row >= 0 && row < size && keyOf(row) == key) return row;
+                i = (i + 1) & (t.length - 1);
+            }
+            return -1;
+        }
+
+        private void rehash(int capacity) {
+            int[] t = newTable(capacity);
+            for (int row : table) {
+                if (row < 0) continue;
+                int i = slot(keyOf(row), capacity);
+                while (t[i] != EMPTY) i = (i + 1) & (capacity - 1);
+                t[i] = row;
+            }
+            table = t;
+            used = live;
+        }
+
+        private long keyOf(int row) {
+            return ids[row >>> CHUNK_BITS][row & (CHUNK - 1)];
+        }
+
+        private int slot(long key, int capacity) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & (capacity - 1);
+        }
+
+        private int[] newTable(int capacity) {
+            int[] t = new int[capacity];
+            Arrays.fill(t, EMPTY);
+            return t;
+        }
+    }
+
+    // String <-> dense int code; codes never change once given out
+    private static final class Dictionary {
+        private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+        private volatile String[] values = new String[16];
+        private int next;
+
+        int find(String s) {
+            Integer c = codes.get(s);
+            return c == null ? -1 : c;
+        }
+
+        int code(String s) {
+            Integer c = codes.get(s);
+            return c != null ? c : assign(s);
+        }
+
+        private synchronized int assign(String s) {
+            Integer c = codes.get(s);
+            if (c != null) return c;
+            String[] v = values;
+            if (next == v.length) v = Arrays.copyOf(v, next * 2);
+            v[next] = s;
+            values = v;
+            codes.put(s, next); // published after the value is readable
+            return next++;
+        }
+
+        String value(int code) { return values[code]; }
+    }
+}
+
+// A car that is one row of a ColumnarFleet. Beyond FleetStore's bookkeeping
+// it holds only the store and the row number; every getter reads the
+// columns and every booking change is the row's compare-and-set.
+final class RowCar extends Car {
+    private final ColumnarFleet rows;
+    private final int row;
+
+    RowCar(ColumnarFleet rows, int row) {
+        this.rows = rows;
+        this.row = row;
+    }
+
+    @Override public String getCarId() { return rows.carId(row); }
+    @Override public String getBrand() { return rows.brand(row); }
+    @Override public String getModel() { return rows.model(row); }
+    @Override public double getListPrice() { return rows.price(row); }
+    @Override public boolean isAvailable() { return rows.isAvailable(row); }
+    @Override public boolean isRetired() { return rows.isRetired(row); }
+    @Override public String getCurrentRenterId() { return rows.renterId(row); }
+    @Override Booking booking() { return rows.booking(row); }
+
+    @Override
+    public long rent(String userId, long since, double rate) {
+        return rows.rent(row, userId, since, rate);
+    }
+
+    @Override
+    public Booking returnCar(String userId) {
+        return rows.returnCar(row, userId);
+    }
+
+    @Override
+    boolean retire() {
+        return rows.retire(row);
+    }
+
+    @Override
+    boolean restore(String renterId, long version, long since, double rate) {
+        return rows.restore(row, renterId, version, since, rate);
+    }
+}
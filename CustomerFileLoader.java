@@ -0,0 +1,147 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// ===========================
+// CUSTOMERS FILE LOADER
+// ===========================
+// Reads the pipe-delimited customers file (id|name|password|contact|email).
+// The file is memory-mapped and cut into chunks that end on line boundaries;
+// each chunk is parsed on its own core by scanning bytes for '|' and '\n',
+// so there is no regex, no split array and no per-line String for the line.
+// Results come back in file order, so "first one wins" on duplicates still
+// means the first line in the file.
+class CustomerFileLoader {
+    private static final int TARGET_CHUNK = 4 << 20;
+
+    static final class Result {
+        final List<Customer> customers;
+        final int malformed;
+
+        Result(List<Customer> customers, int malformed) {
+            this.customers = customers;
+            this.malformed = malformed;
+        }
+    }
+
+    static Result load(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            long[] bounds = chunkBounds(ch, size);
+            int chunks = bounds.length - 1;
+
+            Result[] parts = new Result[chunks];
+            IntStream.range(0, chunks).parallel().forEach(i -> {
+                try {
+                    parts[i] = parseChunk(ch, bounds[i], bounds[i + 1]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            int total = 0;
+            for (Result r : parts) total += r.customers.size();
+            List<Customer> customers = new ArrayList<>(total);
+            int malformed = 0;
+            for (Result r : parts) {
+                customers.addAll(r.customers);
+                malformed += r.malformed;
+            }
+            return new Result(customers, malformed);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Chunk starts: every boundary sits just after a '\n' (or at 0 / size)
+    private static long[] chunkBounds(FileChannel ch, long size) throws IOException {
+        // Small files aren't worth splitting; big ones get a few chunks per core
+        int wanted = size < (1 << 20) ? 1
+                : (int) Math.max(Runtime.getRuntime().availableProcessors() * 4L, size / TARGET_CHUNK);
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        long step = Math.max(1, size / wanted);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long pos = step;
+        while (pos < size) {
+            long nl = -1;
+            long scan = pos;
+            while (nl < 0 && scan < size) {
+                probe.clear();
+                int n = ch.read(probe, scan);
+                if (n <= 0) break;
+                for (int i = 0; i < n; i++) {
+                    if (probe.get(i) == '\n') {
+                        nl = scan + i;
+                        break;
+                    }
+                }
+                scan += n;
+            }
+            if (nl < 0 || nl + 1 >= size) break;
+            bounds.add(nl + 1);
+            pos = nl + 1 + step;
+        }
+        bounds.add(size);
+        long[] out = new long[bounds.size()];
+        for (int i = 0; i < out.length; i++) out[i] = bounds.get(i);
+        return out;
+    }
+
+    private static Result parseChunk(FileChannel ch, long start, long end) throws IOException {
+        int len = (int) (end - start);
+        List<Customer> out = new ArrayList<>(len / 64 + 1);
+        int malformed = 0;
+        if (len == 0) return new Result(out, 0);
+
+        MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, start, len);
+        byte[] buf = new byte[len];
+        map.get(buf);
+
+        int[] sep = new int[4];
+        int lineStart = 0;
+        while (lineStart < len) {
+            int lineEnd = lineStart;
+            int seps = 0;
+            boolean blank = true;
+            while (lineEnd < len && buf[lineEnd] != '\n') {
+                byte b = buf[lineEnd];
+                if (b == '|') {
+                    if (seps < 4) sep[seps] = lineEnd;
+                    seps++;
+                }
+                if (b != ' ' && b != '\t' && b != '\r') blank = false;
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            if (lineEnd > lineStart && buf[lineEnd - 1] == '\r') lineEnd--;
+
+            if (!blank) {
+                if (seps == 4 && lineEnd > sep[3] + 1) {
+                    out.add(new Customer(
+                            field(buf, lineStart, sep[0]),
+                            field(buf, sep[0] + 1, sep[1]),
+                            field(buf, sep[1] + 1, sep[2]),
+                            field(buf, sep[2] + 1, sep[3]),
+                            field(buf, sep[3] + 1, lineEnd)));
+                } else {
+                    malformed++;
+                }
+            }
+            lineStart = next;
+        }
+        return new Result(out, malformed);
+    }
+
+    private static String field(byte[] buf, int from, int to) {
+        return new String(buf, from, to - from, StandardCharsets.UTF_8);
+    }
+}
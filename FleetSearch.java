@@ -0,0 +1,303 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// ===========================
+// FLEET SEARCH
+// ===========================
+// Brand and model never change once a car exists and prices only change with
+// a new PriceBook, so they are indexed in an immutable snapshot that is
+// rebuilt only after cars are added or removed (FleetStore.modCount) or new
+// prices are published. PricingEngine builds the index for a new book before
+// publishing it, so searches move to the new prices together with the tables:
+//   - price index:  slots sorted by price; a price range is one contiguous run
+//   - prefix index: the distinct lower-case keys "brand", "model" and
+//     "brand model" in sorted order, each with the slots carrying it; a typed
+//     prefix is one binary search plus a walk over the matching keys
+// Each filter becomes a slot bitset and they are ANDed with the live
+// availability bits (and, for a date range, with the reservation day bits).
+// Paging walks the result bits in fleet order, or the price run in price order.
+class FleetSearch {
+
+    enum Sort { FLEET_ORDER, PRICE_ASC, PRICE_DESC }
+
+    static final class Query {
+        String text = "";                          // prefix of brand, model or "brand model"
+        double minPrice = 0;
+        double maxPrice = Double.POSITIVE_INFINITY;
+        boolean availableNow;                      // free right now
+        LocalDate from, to;                        // optional: free for these days
+        Sort sort = Sort.FLEET_ORDER;
+        int offset;
+        int limit = 100;
+
+        Query copy() {
+            Query q = new Query();
+            q.text = text;
+            q.minPrice = minPrice;
+            q.maxPrice = maxPrice;
+            q.availableNow = availableNow;
+            q.from = from;
+            q.to = to;
+            q.sort = sort;
+            q.offset = offset;
+            q.limit = limit;
+            return q;
+        }
+    }
+
+    static final class Page {
+        final List<Car> cars;
+        final int total;      // matches across all pages
+        final PriceBook book; // the prices the page was filtered and ordered by; show these
+
+        Page(List<Car> cars, int total, PriceBook book) {
+            this.cars = cars;
+            this.total = total;
+            this.book = book;
+        }
+    }
+
+    private final FleetStore fleet;
+    private final ReservationBook reservations;
+    private volatile Index index;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    FleetSearch(FleetStore fleet, ReservationBook reservations) {
+        this.fleet = fleet;
+        this.reservations = reservations;
+    }
+
+    Page search(Query q) {
+        return search(q, null);
+    }
+
+    // Against a given book (BranchRouter pins one for every branch), or the
+    // index's own when null. Only a search racing a reprice finds the index on
+    // another book; it indexes the prices it was given for itself.
+    Page search(Query q, PriceBook book) {
+        Index ix = current();
+        if (book != null && ix.book != book) ix = new Index(fleet, fleet.modCount(), book);
+        int slots = ix.cars.length;
+        String prefix = normalize(q.text);
+        long today = LocalDate.now().toEpochDay();
+        boolean dated = q.from != null && q.to != null;
+        boolean needFreeNow = q.availableNow || (dated && q.from.toEpochDay() <= today);
+
+        long[] bits = Arrays.copyOf(needFreeNow ? fleet.availableSlots() : ix.live, ix.live.length);
+        if (needFreeNow) and(bits, ix.live);
+        if (!prefix.isEmpty()) and(bits, ix.prefixSlots(prefix));
+        int lo = lowerBound(ix.prices, q.minPrice, false);
+        int hi = lowerBound(ix.prices, q.maxPrice, true);
+        if (q.sort == Sort.FLEET_ORDER && (lo > 0 || hi < ix.prices.length)) {
+            and(bits, ix.priceSlots(lo, hi));
+        }
+        if (dated) {
+            long[] booked = reservations.bookedSlots(q.from.toEpochDay(), q.to.toEpochDay(), slots);
+            for (int w = 0; w < bits.length && w < booked.length; w++) bits[w] &= ~booked[w];
+        }
+
+        int limit = Math.max(0, q.limit), offset = Math.max(0, q.offset);
+        List<Car> page = new ArrayList<>(Math.min(limit, 1024));
+        int total = 0;
+        if (q.sort == Sort.FLEET_ORDER) {
+            for (int w = 0; w < bits.length; w++) {
+                long word = bits[w];
+                while (word != 0) {
+                    int slot = (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    if (total >= offset && page.size() < limit) page.add(ix.cars[slot]);
+                    total++;
+                }
+            }
+        } else {
+            boolean asc = q.sort == Sort.PRICE_ASC;
+            for (int i = lo; i < hi; i++) {
+                int slot = ix.byPrice[asc ? i : lo + hi - 1 - i];
+                if ((bits[slot >>> 6] & (1L << slot)) == 0) continue;
+                if (total >= offset && page.size() < limit) page.add(ix.cars[slot]);
+                total++;
+            }
+        }
+        page.removeIf(c -> fleet.find(c.getCarId()) != c); // removed since the index was built
+        return new Page(page, total, ix.book);
+    }
+
+    // Single-car form of search(), for live table updates
+    boolean matches(Query q, Car car) {
+        double price = current().book.priceOf(car);
+        String prefix = normalize(q.text);
+        if (!prefix.isEmpty()) {
+            String brand = normalize(car.getBrand()), model = normalize(car.getModel());
+            if (!brand.startsWith(prefix) && !model.startsWith(prefix) && !(brand + " " + model).startsWith(prefix)) {
+                return false;
+            }
+        }
+        if (price < q.minPrice || price > q.maxPrice) return false;
+        if (q.availableNow && !car.isAvailable()) return false;
+        if (q.from != null && q.to != null) return RentalService.isAvailableBetween(car, q.from, q.to);
+        return fleet.find(car.getCarId()) == car;
+    }
+
+    static String normalize(String s) {
+        return s == null ? "" : s.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    // After cars are added or removed the previous index keeps answering while
+    // one background rebuild runs, so a keystroke never waits on a rebuild.
+    // Only the very first search builds inline.
+    private Index current() {
+        Index ix = index;
+        if (ix == null) {
+            synchronized (this) {
+                if (index == null) index = new Index(fleet, fleet.modCount(), PricingEngine.current());
+                return index;
+            }
+        }
+        boolean stale = ix.modCount != fleet.modCount() || ix.book.version < PricingEngine.current().version;
+        if (stale && rebuilding.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("search-index").start(() -> {
+                try {
+                    index = new Index(fleet, fleet.modCount(), PricingEngine.current());
+                } finally {
+                    rebuilding.set(false);
+                }
+            });
+        }
+        return ix;
+    }
+
+    // Builds the index for a book about to be published (PricingEngine.reprice)
+    void prepare(PriceBook book) {
+        index = new Index(fleet, fleet.modCount(), book);
+    }
+
+    private static void and(long[] bits, long[] mask) {
+        for (int w = 0; w < bits.length; w++) bits[w] &= w < mask.length ? mask[w] : 0;
+    }
+
+    // First index whose price is >= value (or > value when inclusive)
+    private static int lowerBound(double[] prices, double value, boolean inclusive) {
+        int lo = 0, hi = prices.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (prices[mid] < value || (inclusive && prices[mid] == value)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static final class Index {
+        final int modCount;
+        final PriceBook book;      // the prices below
+        final Car[] cars;          // by slot; null where a car was removed
+        final long[] live;         // slots holding a car
+        final int[] byPrice;       // slots in price order
+        final double[] prices;     // prices[i] is the price of byPrice[i]
+        final String[] keys;       // distinct search keys, sorted
+        final int[][] keyCombos;   // brand/model combinations carrying keys[i]
+        final int[][] comboSlots;  // slots of each distinct brand/model combination
+
+        // Built with primitives and per-combination work only: a fleet has
+        // few distinct brand/model pairs, so 100k cars rebuild in a few ms
+        Index(FleetStore fleet, int modCount, PriceBook book) {
+            this.modCount = modCount;
+            this.book = book;
+            List<Car> all = fleet.all();
+            int n = all.size(), slots = 0;
+            for (Car c : all) slots = Math.max(slots, c.slot + 1);
+            cars = new Car[slots];
+            live = new long[(slots + 63) >>> 6];
+
+            // Group cars by raw (brand, model); each group is normalized once
+            Map<String, Map<String, Integer>> comboIds = new HashMap<>();
+            List<String[]> combos = new ArrayList<>();
+            int[] comboOfCar = new int[n];
+            int[] comboSize = new int[16];
+            for (int i = 0; i < n; i++) {
+                Car c = all.get(i);
+                cars[c.slot] = c;
+                live[c.slot >>> 6] |= 1L << c.slot;
+                Map<String, Integer> models = comboIds.computeIfAbsent(c.getBrand(), k -> new HashMap<>());
+                Integer id = models.get(c.getModel());
+                if (id == null) {
+                    id = combos.size();
+                    models.put(c.getModel(), id);
+                    combos.add(new String[]{normalize(c.getBrand()), normalize(c.getModel())});
+                    if (id == comboSize.length) comboSize = Arrays.copyOf(comboSize, id * 2);
+                }
+                comboOfCar[i] = id;
+                comboSize[id]++;
+            }
+            comboSlots = new int[combos.size()][];
+            for (int id = 0; id < comboSlots.length; id++) comboSlots[id] = new int[comboSize[id]];
+            int[] filled = new int[combos.size()];
+            for (int i = 0; i < n; i++) {
+                int id = comboOfCar[i];
+                comboSlots[id][filled[id]++] = all.get(i).slot;
+            }
+
+            Map<String, List<Integer>> combosByKey = new HashMap<>();
+            for (int id = 0; id < combos.size(); id++) {
+                String brand = combos.get(id)[0], model = combos.get(id)[1];
+                for (String key : new String[]{brand, model, brand + " " + model}) {
+                    List<Integer> list = combosByKey.computeIfAbsent(key, k -> new ArrayList<>());
+                    if (list.isEmpty() || list.get(list.size() - 1) != id) list.add(id);
+                }
+            }
+            keys = combosByKey.keySet().toArray(new String[0]);
+            Arrays.sort(keys);
+            keyCombos = new int[keys.length][];
+            for (int i = 0; i < keys.length; i++) {
+                keyCombos[i] = combosByKey.get(keys[i]).stream().mapToInt(Integer::intValue).toArray();
+            }
+
+            // Price order: one sort of the raw prices, then a counting sort of
+            // the slots by price rank (stable, so equal prices keep fleet order)
+            double[] distinct = new double[n];
+            for (int i = 0; i < n; i++) distinct[i] = book.priceOf(all.get(i));
+            Arrays.sort(distinct);
+            int unique = 0;
+            for (int i = 0; i < n; i++) {
+                if (unique == 0 || Double.compare(distinct[i], distinct[unique - 1]) != 0) distinct[unique++] = distinct[i];
+            }
+            int[] rank = new int[n];
+            int[] start = new int[unique + 1];
+            for (int i = 0; i < n; i++) {
+                rank[i] = Arrays.binarySearch(distinct, 0, unique, book.priceOf(all.get(i)));
+                start[rank[i] + 1]++;
+            }
+            for (int r = 0; r < unique; r++) start[r + 1] += start[r];
+            byPrice = new int[n];
+            prices = new double[n];
+            for (int i = 0; i < n; i++) {
+                int at = start[rank[i]]++;
+                byPrice[at] = all.get(i).slot;
+                prices[at] = distinct[rank[i]];
+            }
+        }
+
+        long[] prefixSlots(String prefix) {
+            long[] out = new long[live.length];
+            int i = Arrays.binarySearch(keys, prefix);
+            if (i < 0) i = -i - 1;
+            for (; i < keys.length && keys[i].startsWith(prefix); i++) {
+                for (int combo : keyCombos[i]) {
+                    for (int slot : comboSlots[combo]) out[slot >>> 6] |= 1L << slot;
+                }
+            }
+            return out;
+        }
+
+        long[] priceSlots(int lo, int hi) {
+            long[] out = new long[live.length];
+            for (int i = lo; i < hi; i++) out[byPrice[i] >>> 6] |= 1L << byPrice[i];
+            return out;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// ===========================
+// FLEET STORE (indexed)
+// ===========================
+// Cars live in slots (insertion order, so the tables keep their old ordering).
+// Three indexes sit on top of the slots:
+//   - car id   -> car       (hash lookup for rent / return / remove)
+//   - available bitset      (one bit per slot, set while the car is free)
+//   - renter id -> cars     (so "My Rentals" only touches that customer's cars)
+//
+// Adding and removing cars is rare and takes the store lock. Rent and return
+// are decided by the car's own compare-and-set; afterwards sync() brings the
+// indexes in line under one of a fixed set of stripe locks, so bookings on
+// different cars never wait on each other.
+class FleetStore implements Iterable<Car> {
+    private static final int STRIPES = 64;
+    private static final int CHUNK_BITS = 4096;
+
+    private volatile Car[] slots = new Car[64];
+    private volatile int size;   // slots handed out so far, removed ones included
+    private volatile int count;  // live cars
+    private volatile int modCount; // bumped by add / remove (not by bookings)
+
+    private final ConcurrentHashMap<String, Car> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<Car>> byRenter = new ConcurrentHashMap<>();
+    // Bitset split into fixed chunks so growing it never copies (and never loses) live bits
+    private volatile AtomicLongArray[] availableChunks = new AtomicLongArray[0];
+    private final Object[] stripes = new Object[STRIPES];
+
+    public FleetStore() {
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Object();
+    }
+
+    public synchronized void add(Car car) {
+        if (byId.putIfAbsent(car.getCarId(), car) != null) {
+            throw new IllegalArgumentException("Duplicate car id: " + car.getCarId());
+        }
+        Car[] current = slots;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        int slot = size;
+        car.slot = slot;
+        current[slot] = car;
+        ensureChunk(slot);
+        slots = current;
+        size = slot + 1;
+        count++;
+        modCount++;
+        sync(car);
+    }
+
+    public Car find(String carId) {
+        return byId.get(carId);
+    }
+
+    public synchronized Car remove(String carId) {
+        Car car = byId.remove(carId);
+        if (car == null) return null;
+        slots[car.slot] = null;
+        count--;
+        modCount++;
+        sync(car);
+        return car;
+    }
+
+    // Brings the bitset and renter index in line with the car's current booking.
+    // Safe to call from any thread after any transition; it always indexes the
+    // latest state, so out-of-order callers can't leave a stale entry behind.
+    public void sync(Car car) {
+        synchronized (stripes[car.slot % STRIPES]) {
+            boolean listed = byId.get(car.getCarId()) == car;
+            String renterId = listed ? car.getCurrentRenterId() : null;
+            if (!Objects.equals(renterId, car.indexedRenterId)) {
+                if (car.indexedRenterId != null) dropRental(car.indexedRenterId, car);
+                if (renterId != null) addRental(renterId, car);
+                car.indexedRenterId = renterId;
+            }
+            setAvailableBit(car.slot, listed && car.isAvailable());
+        }
+    }
+
+    public List<Car> available() {
+        AtomicLongArray[] chunks = availableChunks;
+        Car[] cars = slots;
+        List<Car> out = new ArrayList<>();
+        for (int c = 0; c < chunks.length; c++) {
+            AtomicLongArray chunk = chunks[c];
+            for (int w = 0; w < chunk.length(); w++) {
+                long word = chunk.get(w);
+                while (word != 0) {
+                    int slot = c * CHUNK_BITS + w * 64 + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    Car car = slot < cars.length ? cars[slot] : null;
+                    if (car != null && car.isAvailable()) out.add(car);
+                }
+            }
+        }
+        return out;
+    }
+
+    // Live cars whose slot bit is clear in excluded (see ReservationBook.bookedSlots);
+    // freeNow additionally requires the car to be available right now
+    public List<Car> allExcept(long[] excluded, boolean freeNow) {
+        int end = size; // read first: slots and chunks are published before size grows
+        Car[] cars = slots;
+        AtomicLongArray[] chunks = availableChunks;
+        long[] candidates = new long[(end + 63) >>> 6];
+        int expected = 0;
+        for (int w = 0; w < candidates.length; w++) {
+            long word = w < excluded.length ? ~excluded[w] : -1L;
+            if (freeNow) {
+                int c = w / (CHUNK_BITS / 64);
+                word &= c < chunks.length ? chunks[c].get(w % (CHUNK_BITS / 64)) : 0;
+            }
+            candidates[w] = word;
+            expected += Long.bitCount(word);
+        }
+        List<Car> out = new ArrayList<>(expected);
+        for (int w = 0; w < candidates.length; w++) {
+            long word = candidates[w];
+            while (word != 0) {
+                int slot = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                if (slot >= end) break;
+                Car car = cars[slot]; // removed cars leave a null slot
+                if (car != null && (!freeNow || car.isAvailable())) out.add(car);
+            }
+        }
+        return out;
+    }
+
+    public int slotCount() { return size; }
+
+    // The slot array itself, for whole-fleet passes (PricingEngine). Read
+    // slotCount() first: the array is at least that long. Read only; removed
+    // slots are null.
+    Car[] slotArray() { return slots; }
+
+    // Changes whenever a car joins or leaves; lets derived indexes spot staleness
+    public int modCount() { return modCount; }
+
+    // Copy of the availability bitset, one bit per slot
+    public long[] availableSlots() {
+        AtomicLongArray[] chunks = availableChunks;
+        long[] out = new long[chunks.length * (CHUNK_BITS / 64)];
+        for (int c = 0; c < chunks.length; c++) {
+            for (int w = 0; w < CHUNK_BITS / 64; w++) out[c * (CHUNK_BITS / 64) + w] = chunks[c].get(w);
+        }
+        return out;
+    }
+
+    // Every live car in slot order
+    public List<Car> all() {
+        List<Car> out = new ArrayList<>(count);
+        for (Car c : this) out.add(c);
+        return out;
+    }
+
+    public List<Car> rentalsOf(String renterId) {
+        Set<Car> cars = byRenter.get(renterId);
+        return cars == null ? Collections.emptyList() : new ArrayList<>(cars);
+    }
+
+    public int size() { return count; }
+
+    public int availableCount() {
+        int total = 0;
+        for (AtomicLongArray chunk : availableChunks) {
+            for (int w = 0; w < chunk.length(); w++) total += Long.bitCount(chunk.get(w));
+        }
+        return total;
+    }
+
+    @Override
+    public Iterator<Car> iterator() {
+        Car[] cars = slots;
+        int end = size;
+        return new Iterator<Car>() {
+            int next = advance(0);
+
+            private int advance(int from) {
+                while (from < end && cars[from] == null) from++;
+                return from;
+            }
+
+            public boolean hasNext() { return next < end; }
+
+            public Car next() {
+                if (next >= end) throw new NoSuchElementException();
+                Car c = cars[next];
+                next = advance(next + 1);
+                return c;
+            }
+        };
+    }
+
+    private void ensureChunk(int slot) {
+        int chunk = slot / CHUNK_BITS;
+        AtomicLongArray[] chunks = availableChunks;
+        if (chunk < chunks.length) return;
+        chunks = Arrays.copyOf(chunks, chunk + 1);
+        chunks[chunk] = new AtomicLongArray(CHUNK_BITS / 64);
+        availableChunks = chunks;
+    }
+
+    private void setAvailableBit(int slot, boolean on) {
+        AtomicLongArray chunk = availableChunks[slot / CHUNK_BITS];
+        int word = (slot % CHUNK_BITS) >>> 6;
+        long mask = 1L << (slot & 63);
+        long prev;
+        do {
+            prev = chunk.get(word);
+            if (((prev & mask) != 0) == on) return;
+        } while (!chunk.compareAndSet(word, prev, on ? prev | mask : prev & ~mask));
+    }
+
+    // Both run inside the map's per-key lock, so an emptied set is never dropped
+    // while another thread is adding to it
+    private void addRental(String renterId, Car car) {
+        byRenter.compute(renterId, (k, cars) -> {
+            if (cars == null) cars = ConcurrentHashMap.newKeySet();
+            cars.add(car);
+            return cars;
+        });
+    }
+
+    private void dropRental(String renterId, Car car) {
+        byRenter.computeIfPresent(renterId, (k, cars) -> {
+            cars.remove(car);
+            return cars.isEmpty() ? null : cars;
+        });
+    }
+}
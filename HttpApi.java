@@ -0,0 +1,445 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// ===========================
+// HTTP API (headless mode)
+// ===========================
+// JSON over the JDK's built-in HTTP server, one virtual thread per request.
+// Every handler calls the same static RentalService as the Swing screens,
+// so the API and the GUI share one state when both run in a process.
+//
+// Login returns a session token; calls that act for someone send it as
+// "Authorization: Bearer <token>" and act as that user. A userId in the
+// body, if given, must match the session. Adding cars needs an admin.
+// Login and sign-up hash a password, so only -Drental.api.hashSlots (default:
+// one per CPU) run at once; past that they get 503 with Retry-After.
+// Car pages price every car from one pricing pass, named by "priceVersion";
+// "price" is the current rate and "listPrice" the price the admin entered.
+//
+//   POST /login            {"username", "password"}          -> user + token
+//   POST /logout           (token)
+//   GET  /cars/available   ?offset=0&limit=100[&from=&to=][&branch=]  -> cars page
+//                          (with from/to: free for those days, yyyy-mm-dd;
+//                          without branch: available anywhere)
+//   GET  /cars/search      ?q=toy&minPrice=&maxPrice=&available=true&from=&to=
+//                          &sort=fleet_order|price_asc|price_desc&offset=&limit=
+//   POST /rent             {"carId"}               (token)   -> result
+//   POST /return           {"carId"}               (token)   -> result
+//   POST /reservations     {"carId", "from", "to"} (token)   -> result
+//   POST /cars             {"brand", "model", "price"[, "branch"]} (admin token) -> car
+//   GET  /branches                                           -> per-branch totals
+//   POST /waitlist         {"carId"} or {"brand", "model"} (token) -> entry + place in line
+//   GET  /waitlist/mine                            (token)   -> entries + open offer
+//   POST /waitlist/leave   {"id"}                  (token)   -> result
+//   POST /waitlist/decline {"carId"}               (token)   -> result
+//                          (an offered car is claimed with POST /rent before "expiresAt")
+//   POST /customers        {"name", "password", "contact", "email"} -> user
+class HttpApi {
+    private static final int MAX_PAGE = 1000;
+    private static final int MAX_BODY = 64 * 1024; // bytes; every request body is one small object
+    // /login and /customers need no session and each runs the slow password
+    // hash, so at most this many hash at once; a request that can't get a slot
+    // within HASH_WAIT_MS gets 503 instead of queueing up CPU work
+    private static final Semaphore HASH_SLOTS = new Semaphore(
+            Integer.getInteger("rental.api.hashSlots", Runtime.getRuntime().availableProcessors()));
+    private static final long HASH_WAIT_MS = 200;
+
+    static HttpServer start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 4096);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/login", ex -> handle(ex, "POST", HttpApi::login));
+        server.createContext("/logout", ex -> handle(ex, "POST", HttpApi::logout));
+        server.createContext("/cars/available", ex -> handle(ex, "GET", HttpApi::available));
+        server.createContext("/cars/search", ex -> handle(ex, "GET", HttpApi::search));
+        server.createContext("/rent", ex -> handle(ex, "POST", HttpApi::rent));
+        server.createContext("/return", ex -> handle(ex, "POST", HttpApi::giveBack));
+        server.createContext("/reservations", ex -> handle(ex, "POST", HttpApi::reserve));
+        server.createContext("/cars", ex -> handle(ex, "POST", HttpApi::addCar));
+        server.createContext("/customers", ex -> handle(ex, "POST", HttpApi::register));
+        server.createContext("/branches", ex -> handle(ex, "GET", HttpApi::branches));
+        server.createContext("/waitlist", ex -> handle(ex, "POST", HttpApi::joinWaitlist));
+        server.createContext("/waitlist/mine", ex -> handle(ex, "GET", HttpApi::myWaitlist));
+        server.createContext("/waitlist/leave", ex -> handle(ex, "POST", HttpApi::leaveWaitlist));
+        server.createContext("/waitlist/decline", ex -> handle(ex, "POST", HttpApi::declineOffer));
+        server.start();
+        System.out.println("HTTP API listening on port " + server.getAddress().getPort());
+        return server;
+    }
+
+    // A handler returns the status code and JSON body
+    private static final class Reply {
+        final int status;
+        final String body;
+
+        Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private interface Handler {
+        Reply handle(HttpExchange ex) throws IOException;
+    }
+
+    // Refused with a specific status: no valid session, not allowed, body too large
+    private static final class Denied extends RuntimeException {
+        final int status;
+
+        Denied(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private static void handle(HttpExchange ex, String method, Handler handler) throws IOException {
+        Reply reply;
+        try {
+            if (!ex.getRequestMethod().equalsIgnoreCase(method)) {
+                reply = error(405, "Use " + method);
+            } else {
+                reply = handler.handle(ex);
+            }
+        } catch (Denied e) {
+            reply = error(e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            reply = error(400, e.getMessage());
+        } catch (UncheckedIOException e) { // the journal could not take the write
+            System.err.println("HTTP " + ex.getRequestURI().getPath() + ": " + e.getMessage());
+            reply = error(503, "Storage unavailable, try again later");
+        } catch (RuntimeException e) { // a bug: details go to the log, not the client
+            System.err.println("HTTP " + ex.getRequestURI().getPath() + " failed: " + e);
+            e.printStackTrace();
+            reply = error(500, "Internal error");
+        }
+        byte[] bytes = reply.body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (reply.status == 503) ex.getResponseHeaders().set("Retry-After", "1");
+        ex.sendResponseHeaders(reply.status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // ---- endpoints ----
+
+    private static Reply login(HttpExchange ex) throws IOException {
+        Map<String, String> req = body(ex);
+        String username = required(req, "username"), password = required(req, "password");
+        SessionManager.Session session = hashing(() -> RentalService.login(username, password));
+        if (session == null) {
+            return error(401, "Invalid credentials");
+        }
+        User u = session.user;
+        return new Reply(200, Json.object("id", Json.quote(u.getId()), "name", Json.quote(u.getName()),
+                "role", Json.quote(u instanceof Admin ? "admin" : "customer"), "token", Json.quote(session.token)));
+    }
+
+    private static Reply logout(HttpExchange ex) {
+        RentalService.logout(token(ex));
+        return new Reply(200, Json.object("result", Json.quote("OK")));
+    }
+
+    // Paged in the search index; cars the waitlist holds for other waiters are
+    // left out, as on the booking screen (a caller's own offer stays in)
+    private static Reply available(HttpExchange ex) {
+        Map<String, String> q = query(ex.getRequestURI());
+        FleetSearch.Query search = new FleetSearch.Query();
+        if (q.containsKey("from") || q.containsKey("to")) {
+            search.from = date(q.get("from"), "from");
+            search.to = date(q.get("to"), "to");
+            RentalService.checkRange(search.from, search.to);
+        } else {
+            search.availableNow = true;
+        }
+        search.offset = Math.max(0, intParam(q, "offset", 0));
+        search.limit = Math.min(MAX_PAGE, Math.max(0, intParam(q, "limit", 100)));
+        Branch branch = q.containsKey("branch") ? branch(q.get("branch")) : null;
+        return carsPage(RentalService.searchOpenTo(search, branch, callerId(ex)), search.offset);
+    }
+
+    private static Reply search(HttpExchange ex) {
+        Map<String, String> q = query(ex.getRequestURI());
+        FleetSearch.Query search = new FleetSearch.Query();
+        search.text = q.getOrDefault("q", "");
+        search.minPrice = doubleParam(q, "minPrice", 0);
+        search.maxPrice = doubleParam(q, "maxPrice", Double.POSITIVE_INFINITY);
+        search.availableNow = Boolean.parseBoolean(q.get("available"));
+        if (q.containsKey("from") || q.containsKey("to")) {
+            search.from = date(q.get("from"), "from");
+            search.to = date(q.get("to"), "to");
+            if (!search.to.isAfter(search.from)) throw new IllegalArgumentException("to must be after from");
+        }
+        try {
+            search.sort = FleetSearch.Sort.valueOf(q.getOrDefault("sort", "fleet_order").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("sort must be fleet_order, price_asc or price_desc");
+        }
+        search.offset = Math.max(0, intParam(q, "offset", 0));
+        search.limit = Math.min(MAX_PAGE, Math.max(0, intParam(q, "limit", 100)));
+        return carsPage(RentalService.branches.search(search), search.offset);
+    }
+
+    // Every car priced from the book the page was ordered by
+    private static Reply carsPage(FleetSearch.Page page, int offset) {
+        PriceBook book = page.book;
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"total\":").append(page.total).append(",\"offset\":").append(offset)
+                .append(",\"priceVersion\":").append(book.version).append(",\"cars\":[");
+        for (int i = 0; i < page.cars.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(carJson(page.cars.get(i), book));
+        }
+        return new Reply(200, sb.append("]}").toString());
+    }
+
+    private static Reply rent(HttpExchange ex) throws IOException {
+        Map<String, String> req = body(ex);
+        return booking(RentalService.rentCar(required(req, "carId"), actingUser(ex, req).getId()));
+    }
+
+    private static Reply giveBack(HttpExchange ex) throws IOException {
+        Map<String, String> req = body(ex);
+        return booking(RentalService.returnCar(required(req, "carId"), actingUser(ex, req).getId()));
+    }
+
+    private static Reply reserve(HttpExchange ex) throws IOException {
+        Map<String, String> req = body(ex);
+        return booking(RentalService.reserve(required(req, "carId"), actingUser(ex, req).getId(),
+                date(required(req, "from"), "from"), date(required(req, "to"), "to")));
+    }
+
+    private static Reply addCar(HttpExchange ex) throws IOException {
+        if (!(actingUser(ex, Map.of()) instanceof Admin)) throw new Denied(403, "Admins only");
+        Map<String, String> req = body(ex);
+        double price;
+        try {
+            price = Double.parseDouble(required(req, "price"));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("price must be a number");
+        }
+        Branch branch = req.containsKey("branch") ? branch(req.get("branch")) : RentalService.branches.main();
+        Car car = RentalService.addCar(required(req, "brand"), required(req, "model"), price, branch);
+        return new Reply(201, carJson(car, PricingEngine.current()));
+    }
+
+    private static Reply branches(HttpExchange ex) {
+        List<Branch> all = RentalService.branches.branches();
+        List<int[]> counts = RentalService.branches.fanOut(b -> new int[]{b.fleet.size(), b.fleet.availableCount()});
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < all.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(Json.object("name", Json.quote(all.get(i).name), "cars", Integer.toString(counts.get(i)[0]),
+                    "available", Integer.toString(counts.get(i)[1])));
+        }
+        return new Reply(200, sb.append(']').toString());
+    }
+
+    private static Reply register(HttpExchange ex) throws IOException {
+        Map<String, String> req = body(ex);
+        String name = required(req, "name"), password = required(req, "password");
+        String contact = required(req, "contact"), email = required(req, "email");
+        Customer c = hashing(() -> new Customer(name, password, contact, email));
+        if (!RentalService.addCustomer(c)) return error(409, "That name is already registered");
+        return new Reply(201, userJson(c));
+    }
+
+    private static Reply joinWaitlist(HttpExchange ex) throws IOException {
+        Map<String, String> req = body(ex);
+        String userId = actingUser(ex, req).getId();
+        Waitlist.Waiter w = req.containsKey("carId")
+                ? RentalService.joinWaitlist(userId, required(req, "carId"))
+                : RentalService.joinWaitlist(userId, required(req, "brand"), required(req, "model"));
+        return new Reply(201, waiterJson(w));
+    }
+
+    private static Reply myWaitlist(HttpExchange ex) {
+        String userId = actingUser(ex, Map.of()).getId();
+        StringBuilder sb = new StringBuilder("{\"waiting\":[");
+        List<Waitlist.Waiter> mine = RentalService.waitlist.waitingFor(userId);
+        for (int i = 0; i < mine.size(); i++) {
+            if (i > 0) sb.append(',');
+            sb.append(waiterJson(mine.get(i)));
+        }
+        Waitlist.Offer offer = RentalService.waitlist.offerFor(userId);
+        sb.append("],\"offer\":");
+        if (offer == null) {
+            sb.append("null");
+        } else {
+            sb.append(Json.object("car", carJson(offer.car, PricingEngine.current()),
+                    "expiresAt", Long.toString(offer.expiresAt)));
+        }
+        return new Reply(200, sb.append('}').toString());
+    }
+
+    private static Reply leaveWaitlist(HttpExchange ex) throws IOException {
+        Map<String, String> req = body(ex);
+        long id;
+        try {
+            id = Long.parseLong(required(req, "id"));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("id must be a number");
+        }
+        return RentalService.leaveWaitlist(actingUser(ex, req).getId(), id)
+                ? new Reply(200, Json.object("result", Json.quote("OK")))
+                : error(404, "Not on that waitlist");
+    }
+
+    private static Reply declineOffer(HttpExchange ex) throws IOException {
+        Map<String, String> req = body(ex);
+        return RentalService.declineOffer(actingUser(ex, req).getId(), required(req, "carId"))
+                ? new Reply(200, Json.object("result", Json.quote("OK")))
+                : error(404, "No open offer for that car");
+    }
+
+    // ---- helpers ----
+
+    // Runs work that hashes a password in one of the HASH_SLOTS
+    private static <T> T hashing(Supplier<T> work) {
+        boolean slot;
+        try {
+            slot = HASH_SLOTS.tryAcquire(HASH_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            slot = false;
+        }
+        if (!slot) throw new Denied(503, "Too many logins and sign-ups right now, try again shortly");
+        try {
+            return work.get();
+        } finally {
+            HASH_SLOTS.release();
+        }
+    }
+
+    private static String token(HttpExchange ex) {
+        String auth = ex.getRequestHeaders().getFirst("Authorization");
+        return auth != null && auth.regionMatches(true, 0, "Bearer ", 0, 7) ? auth.substring(7).trim() : null;
+    }
+
+    // The id of the session's user, or null when the call has no valid session
+    private static String callerId(HttpExchange ex) {
+        User user = RentalService.sessions.user(token(ex));
+        return user == null ? null : user.getId();
+    }
+
+    // The session's user; one lock-free lookup, no password check
+    private static User actingUser(HttpExchange ex, Map<String, String> req) {
+        User user = RentalService.sessions.user(token(ex));
+        if (user == null) throw new Denied(401, "Log in first (Authorization: Bearer <token>)");
+        String claimed = req.get("userId");
+        if (claimed != null && !claimed.trim().equals(user.getId())) throw new Denied(403, "userId is not yours");
+        return user;
+    }
+
+    private static Reply booking(BookingResult result) {
+        int status;
+        switch (result) {
+            case OK: status = 200; break;
+            case NOT_FOUND: status = 404; break;
+            case NOT_RENTER: status = 403; break;
+            default: status = 409;
+        }
+        return new Reply(status, Json.object("result", Json.quote(result.name())));
+    }
+
+    private static Reply error(int status, String message) {
+        return new Reply(status, Json.object("error", Json.quote(message)));
+    }
+
+    private static String carJson(Car c, PriceBook book) {
+        return Json.object("id", Json.quote(c.getCarId()), "brand", Json.quote(c.getBrand()),
+                "model", Json.quote(c.getModel()), "price", Double.toString(book.priceOf(c)),
+                "listPrice", Double.toString(c.getListPrice()),
+                "available", Boolean.toString(c.isAvailable()),
+                "branch", Json.quote(c.branch == null ? "" : c.branch.name));
+    }
+
+    private static String waiterJson(Waitlist.Waiter w) {
+        return Json.object("id", Long.toString(w.seq), "waitingFor", Json.quote(w.describe()),
+                "carId", w.carId == null ? "null" : Json.quote(w.carId),
+                "ahead", Integer.toString(RentalService.waitlist.position(w)),
+                "joinedAt", Long.toString(w.joinedAt));
+    }
+
+    private static Branch branch(String name) {
+        Branch b = RentalService.branches.named(name);
+        if (b == null) throw new IllegalArgumentException("Unknown branch: " + name);
+        return b;
+    }
+
+    private static String userJson(User u) {
+        return Json.object("id", Json.quote(u.getId()), "name", Json.quote(u.getName()),
+                "role", Json.quote(u instanceof Admin ? "admin" : "customer"));
+    }
+
+    private static Map<String, String> body(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY + 1);
+            if (bytes.length > MAX_BODY) throw new Denied(413, "Request body is over " + MAX_BODY + " bytes");
+            return Json.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String required(Map<String, String> req, String key) {
+        String v = req.get(key);
+        if (v == null || v.trim().isEmpty()) throw new IllegalArgumentException(key + " is required");
+        return v.trim();
+    }
+
+    private static Map<String, String> query(URI uri) {
+        Map<String, String> out = new HashMap<>();
+        String q = uri.getRawQuery();
+        if (q == null) return out;
+        for (String pair : q.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                out.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return out;
+    }
+
+    private static LocalDate date(String value, String key) {
+        if (value == null) throw new IllegalArgumentException(key + " is required");
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(key + " must be a date (yyyy-mm-dd)");
+        }
+    }
+
+    private static double doubleParam(Map<String, String> q, String key, double fallback) {
+        try {
+            return q.containsKey(key) ? Double.parseDouble(q.get(key)) : fallback;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be a number");
+        }
+    }
+
+    private static int intParam(Map<String, String> q, String key, int fallback) {
+        try {
+            return q.containsKey(key) ? Integer.parseInt(q.get(key)) : fallback;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " must be an integer");
+        }
+    }
+}
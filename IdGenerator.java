@@ -0,0 +1,103 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ===========================
+// ID GENERATOR
+// ===========================
+// 64-bit ids in the Snowflake layout:
+//   [ 41 bits ms since 2024-01-01 | 10 bits node | 12 bits sequence ]
+// so ids grow with time and two nodes (-Drental.node) never mint the same one.
+//
+// The last (timestamp, sequence) pair is one AtomicLong advanced by CAS, so
+// next() takes no lock. Each id is max(now, last + 1): up to 4096 ids per ms,
+// after which the timestamp runs a little ahead of the clock and waits for
+// nothing. A clock that steps back can't cause a repeat either.
+//
+// Restarts: ids.lease holds a timestamp no id has reached yet. Crossing it
+// persists a new lease LEASE_MS further on (the only locked path, at most once
+// per LEASE_MS), and a restart resumes above the stored lease.
+class IdGenerator {
+    static final long EPOCH = 1_704_067_200_000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQ_BITS = 12;
+    static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    private static final long SEQ_MASK = (1L << SEQ_BITS) - 1;
+    private static final long LEASE_MS = 10_000;
+
+    private final long node;
+    private final Path leaseFile;                  // null: nothing persisted
+    private final AtomicLong last;                 // (ms since EPOCH << SEQ_BITS) | sequence
+    private volatile long leaseUntil;              // ms since EPOCH no id may reach
+
+    // leaseFloor: the lease stored by the previous run (ms since EPOCH), or 0
+    IdGenerator(int node, Path leaseFile, long leaseFloor) {
+        if (node < 0 || node > MAX_NODE) throw new IllegalArgumentException("Node must be 0.." + MAX_NODE);
+        this.node = (long) node << SEQ_BITS;
+        this.leaseFile = leaseFile;
+        long start = Math.max(System.currentTimeMillis() - EPOCH, leaseFloor);
+        last = new AtomicLong((start << SEQ_BITS) - 1);
+        leaseUntil = leaseFile == null ? Long.MAX_VALUE : 0;
+    }
+
+    // In memory only (benchmarks, tools)
+    IdGenerator(int node) {
+        this(node, null, 0);
+    }
+
+    // Node from -Drental.node, lease kept in dir
+    static IdGenerator fromSystemProperties(Path dir) {
+        Path lease = dir.resolve("ids.lease");
+        long floor = 0;
+        try {
+            Files.createDirectories(dir);
+            if (Files.exists(lease)) floor = Long.parseLong(Files.readString(lease, StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Id lease unreadable, ids start from the clock: " + e.getMessage());
+        }
+        return new IdGenerator(Integer.getInteger("rental.node", 0), lease, floor);
+    }
+
+    long next() {
+        while (true) {
+            long prev = last.get();
+            long next = Math.max((System.currentTimeMillis() - EPOCH) << SEQ_BITS, prev + 1);
+            long millis = next >>> SEQ_BITS;
+            if (millis >= leaseUntil) {
+                extendLease(millis);
+                continue;
+            }
+            if (last.compareAndSet(prev, next)) {
+                return millis << (NODE_BITS + SEQ_BITS) | node | (next & SEQ_MASK);
+            }
+        }
+    }
+
+    // Creation time of an id, in epoch millis
+    static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQ_BITS)) + EPOCH;
+    }
+
+    private synchronized void extendLease(long millis) {
+        if (millis < leaseUntil) return; // another thread got here first
+        long until = millis + LEASE_MS;
+        try {
+            Path tmp = leaseFile.resolveSibling(leaseFile.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                out.write(ByteBuffer.wrap(Long.toString(until).getBytes(StandardCharsets.UTF_8)));
+                out.force(false); // on disk before any id past the old lease goes out
+            }
+            Files.move(tmp, leaseFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not persist id lease: " + e.getMessage());
+        }
+        leaseUntil = until;
+    }
+}
@@ -0,0 +1,548 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// ===========================
+// WRITE-AHEAD JOURNAL
+// ===========================
+// Every mutation is appended as one framed record: [length][crc32][payload].
+// A single writer thread drains whatever has queued up and writes it as one
+// group, so under load many mutations share one write and one fsync.
+//
+// On disk the journal is a run of numbered segments next to the state
+// snapshot: segment-000001.log, segment-000002.log, ...
+// When the active segment grows past the threshold the writer rolls to a new
+// segment and a background task has the checkpoint write a fresh snapshot,
+// after which the older segments are deleted. Startup loads the snapshot and
+// replays the segments on top.
+//
+// A journal that failed to open, or whose writes have failed once, refuses
+// every later write: appends come back already failed, and awaitDurable and
+// commit throw UncheckedIOException. (Nothing is appended after a failed write,
+// so a torn frame never ends up in the middle of a segment.)
+class Journal implements Closeable {
+
+    enum SyncPolicy {
+        ALWAYS,   // fsync every group; appenders wait until their record is on disk (or the write failed)
+        INTERVAL, // fsync at most every interval; appenders don't wait
+        NEVER     // leave flushing to the OS
+    }
+
+    // Persists the full current state (the snapshot); supplied by RentalService
+    interface Checkpoint {
+        void write() throws IOException;
+    }
+
+    private static final String LEGACY_BASE = "base.log"; // record-format base from before snapshots
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final int MAX_BATCH = 4096;
+
+    private final Path dir;
+    private final SyncPolicy policy;
+    private final long intervalMs;
+    private final long compactBytes;
+
+    private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "journal-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final Entry stop = new Entry(null);
+
+    // Car additions and removals apply and append while holding this lock, so
+    // their log order matches their real order and a cut never splits them
+    final Object cutLock = new Object();
+
+    private Thread writer;
+    private FileChannel active;
+    private volatile int activeSegment;
+    private long activeBytes;
+    private volatile Checkpoint checkpoint;
+    private long replayed;
+    private volatile IOException broken; // the first failed write; no writes after it
+
+    Journal(Path dir, SyncPolicy policy, long intervalMs, long compactBytes) {
+        this.dir = dir;
+        this.policy = policy;
+        this.intervalMs = intervalMs;
+        this.compactBytes = compactBytes;
+    }
+
+    // Configured from -Drental.journal.* system properties
+    static Journal fromSystemProperties() {
+        Path dir = Paths.get(System.getProperty("rental.journal.dir", "rental-journal"));
+        SyncPolicy policy = SyncPolicy.valueOf(System.getProperty("rental.journal.fsync", "always").toUpperCase(Locale.ROOT));
+        long interval = Long.getLong("rental.journal.fsyncIntervalMs", 100);
+        long compact = Long.getLong("rental.journal.compactBytes", 8L << 20);
+        return new Journal(dir, policy, interval, compact);
+    }
+
+    // True if replay found any earlier records
+    boolean hadHistory() { return replayed > 0; }
+
+    Path dir() { return dir; }
+
+    void setCheckpoint(Checkpoint checkpoint) { this.checkpoint = checkpoint; }
+
+    // Feeds every surviving record to the consumer, then opens the newest
+    // segment for appends and starts the writer thread.
+    void replayAndOpen(Consumer<Record> apply) throws IOException {
+        Files.createDirectories(dir);
+        replayed = readAll(apply);
+        List<Integer> segments = segmentNumbers();
+        // Keep appending to the newest segment (its torn tail, if any, is already cut off)
+        activeSegment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+        active = openSegment(activeSegment);
+        activeBytes = active.size();
+
+        writer = new Thread(this::writeLoop, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Feeds every surviving record to the consumer without opening the journal
+    // for appends; startup uses it to pick out customers before the full replay.
+    // Torn tails are cut off here just as replayAndOpen would.
+    void scan(Consumer<Record> apply) throws IOException {
+        if (Files.isDirectory(dir)) readAll(apply);
+    }
+
+    private long readAll(Consumer<Record> apply) throws IOException {
+        long records = 0;
+        Path base = dir.resolve(LEGACY_BASE);
+        if (Files.exists(base)) {
+            records += readFile(base, apply);
+        }
+        for (int n : segmentNumbers()) {
+            records += readFile(segmentPath(n), apply);
+        }
+        return records;
+    }
+
+    // Queues a record; returns at once. Pair with awaitDurable() if needed.
+    // A journal that can't take writes returns the entry already failed.
+    Entry append(Record record) {
+        Entry e = new Entry(record.encode());
+        IOException refused = refusal();
+        if (refused != null) {
+            e.failure = refused;
+            e.done = true;
+            return e;
+        }
+        queue.add(e);
+        return e;
+    }
+
+    // Throws if writes would be refused, so callers can fail before changing anything
+    void checkWritable() {
+        IOException refused = refusal();
+        if (refused != null) throw new UncheckedIOException("Journal is not accepting writes", refused);
+    }
+
+    private IOException refusal() {
+        if (writer == null) return new IOException("journal is not open");
+        return broken;
+    }
+
+    // Blocks until the entry is written (and fsynced, under ALWAYS); throws
+    // UncheckedIOException if it never will be. Under the other policies only
+    // a refusal already known is thrown.
+    void awaitDurable(Entry e) {
+        synchronized (e) {
+            if (policy == SyncPolicy.ALWAYS) {
+                boolean interrupted = false;
+                while (!e.done) {
+                    try {
+                        e.wait();
+                    } catch (InterruptedException ie) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) Thread.currentThread().interrupt();
+            }
+            if (e.failure != null) throw new UncheckedIOException("Journal write failed", e.failure);
+        }
+    }
+
+    void commit(Record record) {
+        awaitDurable(append(record));
+    }
+
+    // Anything appended before this call lands in an older segment than
+    // anything appended after it. Used by the checkpoint to cut the log.
+    void roll() throws IOException {
+        IOException refused = refusal();
+        if (refused != null) throw refused;
+        Entry marker = new Entry(null);
+        marker.roll = true;
+        synchronized (cutLock) {
+            queue.add(marker);
+        }
+        synchronized (marker) {
+            while (!marker.done) {
+                try {
+                    marker.wait();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted waiting for the journal to roll");
+                }
+            }
+            if (marker.failure != null) throw marker.failure;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (writer == null) return;
+        queue.add(stop);
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compactor.shutdown();
+    }
+
+    // ---- writer thread ----
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>();
+        ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+        long lastSync = System.currentTimeMillis();
+        boolean dirty = false;
+        boolean running = true;
+
+        while (running) {
+            Entry first;
+            try {
+                first = queue.poll(intervalMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                first = stop;
+            }
+            if (first != null) {
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH);
+            }
+
+            if (batch.contains(stop)) running = false;
+            // Entries queued before a failure are failed unwritten; after it they could tear the log
+            IOException failure = broken;
+            if (failure == null) {
+                try {
+                    for (Entry e : batch) {
+                        if (e == stop) continue;
+                        if (e.roll) {
+                            buf = flush(buf);
+                            forceActive();
+                            rollSegment();
+                            dirty = false;
+                        } else {
+                            if (buf.remaining() < e.frame.length) {
+                                buf = flush(buf);
+                                if (buf.capacity() < e.frame.length) buf = ByteBuffer.allocate(e.frame.length);
+                            }
+                            buf.put(e.frame);
+                            dirty = true;
+                        }
+                    }
+                    buf = flush(buf);
+
+                    long now = System.currentTimeMillis();
+                    if (dirty && (policy == SyncPolicy.ALWAYS || !running
+                            || (policy == SyncPolicy.INTERVAL && now - lastSync >= intervalMs))) {
+                        forceActive();
+                        lastSync = now;
+                        dirty = false;
+                    }
+                } catch (IOException ex) {
+                    failure = ex;
+                    broken = ex;
+                    buf.clear();
+                    System.err.println("Journal write failed, refusing further writes: " + ex);
+                }
+            }
+
+            for (Entry e : batch) {
+                synchronized (e) {
+                    e.failure = failure;
+                    e.done = true;
+                    e.notifyAll();
+                }
+            }
+            batch.clear();
+
+            if (running && failure == null && activeBytes > compactBytes && checkpoint != null
+                    && compacting.compareAndSet(false, true)) {
+                compactor.execute(this::compact);
+            }
+        }
+
+        try {
+            active.close();
+        } catch (IOException e) {
+            System.err.println("Error closing journal: " + e.getMessage());
+        }
+    }
+
+    private ByteBuffer flush(ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) activeBytes += active.write(buf);
+        buf.clear();
+        return buf;
+    }
+
+    private void forceActive() throws IOException {
+        if (policy != SyncPolicy.NEVER) active.force(false);
+    }
+
+    private void rollSegment() throws IOException {
+        active.close();
+        activeSegment++;
+        active = openSegment(activeSegment);
+        activeBytes = 0;
+    }
+
+    // ---- compaction ----
+
+    // Writes a checkpoint soon (on the compactor) regardless of segment size,
+    // e.g. so a startup migration doesn't have to be replayed every time
+    void checkpointSoon() {
+        if (checkpoint != null && writer != null && compacting.compareAndSet(false, true)) {
+            compactor.execute(this::compact);
+        }
+    }
+
+    private void compact() {
+        try {
+            // Cut first: records in older segments are already reflected in
+            // the state the checkpoint is about to write
+            roll();
+            int firstKept = activeSegment;
+            checkpoint.write();
+            for (int n : segmentNumbers()) {
+                if (n < firstKept) Files.deleteIfExists(segmentPath(n));
+            }
+            Files.deleteIfExists(dir.resolve(LEGACY_BASE));
+        } catch (IOException e) {
+            System.err.println("Journal compaction failed: " + e.getMessage());
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    // ---- files ----
+
+    private FileChannel openSegment(int n) throws IOException {
+        return FileChannel.open(segmentPath(n), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private Path segmentPath(int n) {
+        return dir.resolve(String.format("%s%06d.log", SEGMENT_PREFIX, n));
+    }
+
+    private List<Integer> segmentNumbers() throws IOException {
+        List<Integer> out = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*.log")) {
+            for (Path p : files) {
+                String name = p.getFileName().toString();
+                out.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - 4)));
+            }
+        }
+        out.sort(null);
+        return out;
+    }
+
+    // Reads records until the end or the first torn/corrupt frame; a torn
+    // tail (crash mid-write) is cut off so later appends start clean.
+    private long readFile(Path file, Consumer<Record> apply) throws IOException {
+        long good = 0, records = 0, size = Files.size(file);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int len;
+                try {
+                    len = in.readInt();
+                } catch (EOFException eof) {
+                    break;
+                }
+                try {
+                    int sum = in.readInt();
+                    if (len <= 0 || len > size - good - 8) break;
+                    byte[] payload = new byte[len];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != sum) break;
+                    apply.accept(Record.decode(payload));
+                    records++;
+                    good += 8 + len;
+                } catch (EOFException eof) {
+                    break;
+                }
+            }
+        }
+        if (good < size) {
+            System.err.println("Journal " + file.getFileName() + ": dropping torn tail after byte " + good);
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ch.truncate(good);
+            }
+        }
+        return records;
+    }
+
+    // ---- records ----
+
+    static final class Entry {
+        final byte[] frame;
+        boolean roll;
+        boolean done;
+        IOException failure; // set with done when the record will never be on disk
+
+        Entry(byte[] frame) { this.frame = frame; }
+    }
+
+    // Append only: the ordinal is what goes on disk
+    enum Type { CUSTOMER_ADDED, CAR_ADDED, CAR_REMOVED, RENTED, RETURNED, RESERVED, RESERVATION_CANCELLED,
+        CUSTOMER_ID_CHANGED, PASSWORD_CHANGED }
+
+    // Payload: type byte, field count byte, the fields, double price, long version.
+    // Fields are varint length + UTF-8 bytes, flagged by the type byte's high
+    // bit; older records have no flag and use writeUTF, which caps a field at 64K.
+    static final class Record {
+        private static final int VARINT_FIELDS = 0x80;
+
+        final Type type;
+        final String[] fields;
+        final double price;
+        final long version;
+
+        private Record(Type type, String[] fields, double price, long version) {
+            this.type = type;
+            this.fields = fields;
+            this.price = price;
+            this.version = version;
+        }
+
+        static Record customerAdded(String id, String name, String password, String contact, String email) {
+            return new Record(Type.CUSTOMER_ADDED, new String[]{id, name, password, contact, email}, 0, 0);
+        }
+
+        // A customer moved off an id another customer also had
+        static Record customerIdChanged(String name, String oldId, String newId) {
+            return new Record(Type.CUSTOMER_ID_CHANGED, new String[]{name, oldId, newId}, 0, 0);
+        }
+
+        // A customer's stored password was replaced (the new value is a Passwords hash)
+        static Record passwordChanged(String name, String stored) {
+            return new Record(Type.PASSWORD_CHANGED, new String[]{name, stored}, 0, 0);
+        }
+
+        // Older logs carry only {carId, brand, model}: those cars are in the first branch
+        static Record carAdded(String carId, String brand, String model, double price, String branch) {
+            return new Record(Type.CAR_ADDED, new String[]{carId, brand, model, branch}, price, 0);
+        }
+
+        static Record carRemoved(String carId) {
+            return new Record(Type.CAR_REMOVED, new String[]{carId}, 0, 0);
+        }
+
+        // Older logs carry only {carId, renterId}; since was added later, and
+        // the locked-in rate after that (0 in older records)
+        static Record rented(String carId, String renterId, long version, long since, double rate) {
+            return new Record(Type.RENTED, new String[]{carId, renterId, Long.toString(since)}, rate, version);
+        }
+
+        // The completed rental, as written to the ledger at row ledgerRow (older logs: {carId})
+        static Record returned(String carId, long version, String renterId, long start, long end, long ledgerRow,
+                               String brand, double pricePerDay) {
+            return new Record(Type.RETURNED, new String[]{carId, renterId, Long.toString(start), Long.toString(end),
+                    Long.toString(ledgerRow), brand}, pricePerDay, version);
+        }
+
+        static Record reserved(Reservation r) {
+            return new Record(Type.RESERVED, new String[]{r.id, r.carId, r.renterId,
+                    Long.toString(r.fromDay), Long.toString(r.toDay)}, 0, 0);
+        }
+
+        static Record reservationCancelled(String reservationId) {
+            return new Record(Type.RESERVATION_CANCELLED, new String[]{reservationId}, 0, 0);
+        }
+
+        byte[] encode() {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeInt(0); // length, patched below
+                out.writeInt(0); // crc, patched below
+                out.writeByte(type.ordinal() | VARINT_FIELDS);
+                out.writeByte(fields.length);
+                for (String f : fields) {
+                    byte[] utf8 = f.getBytes(StandardCharsets.UTF_8);
+                    writeVarint(out, utf8.length);
+                    out.write(utf8);
+                }
+                out.writeDouble(price);
+                out.writeLong(version);
+                byte[] frame = bytes.toByteArray();
+
+                int len = frame.length - 8;
+                CRC32 crc = new CRC32();
+                crc.update(frame, 8, len);
+                ByteBuffer.wrap(frame).putInt(0, len).putInt(4, (int) crc.getValue());
+                return frame;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        static Record decode(byte[] payload) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            int tag = in.readUnsignedByte();
+            Type type = Type.values()[tag & ~VARINT_FIELDS];
+            String[] fields = new String[in.readUnsignedByte()];
+            for (int i = 0; i < fields.length; i++) {
+                if ((tag & VARINT_FIELDS) == 0) {
+                    fields[i] = in.readUTF();
+                } else {
+                    byte[] utf8 = new byte[readVarint(in)];
+                    in.readFully(utf8);
+                    fields[i] = new String(utf8, StandardCharsets.UTF_8);
+                }
+            }
+            return new Record(type, fields, in.readDouble(), in.readLong());
+        }
+
+        private static void writeVarint(DataOutputStream out, int v) throws IOException {
+            while ((v & ~0x7F) != 0) {
+                out.writeByte((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            out.writeByte(v);
+        }
+
+        private static int readVarint(DataInputStream in) throws IOException {
+            int v = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = in.readByte();
+                v |= (b & 0x7F) << shift;
+                if (b >= 0) return v;
+            }
+            throw new IOException("Varint too long");
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.HashMap;
+import java.util.Map;
+
+// ===========================
+// MINIMAL JSON
+// ===========================
+// Just enough for the HTTP API: request bodies are flat objects of strings,
+// numbers and booleans; responses are built with the helpers below. Any
+// malformed input throws IllegalArgumentException("Malformed JSON: ...").
+class Json {
+
+    // Parses {"a": "x", "b": 12.5, "c": true} into a -> "x", b -> "12.5", c -> "true"
+    static Map<String, String> parseObject(String text) {
+        Map<String, String> out = new HashMap<>();
+        int[] pos = {skip(text, 0)};
+        expect(text, pos, '{');
+        if (peek(text, pos) == '}') return out;
+        while (true) {
+            String key = readString(text, pos);
+            expect(text, pos, ':');
+            char c = peek(text, pos);
+            String value;
+            if (c == '"') {
+                value = readString(text, pos);
+            } else {
+                int start = pos[0];
+                while (pos[0] < text.length() && ",} \t\r\n".indexOf(text.charAt(pos[0])) < 0) pos[0]++;
+                value = text.substring(start, pos[0]);
+                if (value.isEmpty()) throw malformed("missing value at " + start);
+                if (value.equals("null")) value = null;
+                pos[0] = skip(text, pos[0]);
+            }
+            out.put(key, value);
+            char next = peek(text, pos);
+            pos[0]++;
+            if (next == '}') return out;
+            if (next != ',') throw malformed("expected , or } at " + (pos[0] - 1));
+        }
+    }
+
+    static String quote(String s) {
+        if (s == null) return "null";
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    // {"k1": v1, ...} from alternating key / already-encoded value pairs
+    static String object(String... keyValues) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < keyValues.length; i += 2) {
+            if (i > 0) sb.append(',');
+            sb.append(quote(keyValues[i])).append(':').append(keyValues[i + 1]);
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String readString(String text, int[] pos) {
+        expect(text, pos, '"');
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            if (pos[0] >= text.length()) throw malformed("unterminated string");
+            char c = text.charAt(pos[0]++);
+            if (c == '"') break;
+            if (c == '\\') {
+                if (pos[0] >= text.length()) throw malformed("unterminated string");
+                char e = text.charAt(pos[0]++);
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        sb.append(hex4(text, pos[0]));
+                        pos[0] += 4;
+                        break;
+                    default: sb.append(e);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        pos[0] = skip(text, pos[0]);
+        return sb.toString();
+    }
+
+    // The four hex digits of a unicode escape starting at i
+    private static char hex4(String text, int i) {
+        if (i + 4 > text.length()) throw malformed("short \\u escape at " + (i - 2));
+        int v = 0;
+        for (int k = i; k < i + 4; k++) {
+            int d = Character.digit(text.charAt(k), 16);
+            if (d < 0) throw malformed("bad \\u escape at " + (i - 2));
+            v = v << 4 | d;
+        }
+        return (char) v;
+    }
+
+    private static IllegalArgumentException malformed(String what) {
+        return new IllegalArgumentException("Malformed JSON: " + what);
+    }
+
+    private static void expect(String text, int[] pos, char c) {
+        if (peek(text, pos) != c) throw malformed("expected " + c + " at " + pos[0]);
+        pos[0] = skip(text, pos[0] + 1);
+    }
+
+    private static char peek(String text, int[] pos) {
+        if (pos[0] >= text.length()) throw malformed("unexpected end");
+        return text.charAt(pos[0]);
+    }
+
+    private static int skip(String text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) i++;
+        return i;
+    }
+}
@@ -0,0 +1,391 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// ===========================
+// LOAD TEST
+// ===========================
+// Simulated customers against an in-process RentalService, to find how many
+// concurrent users it handles and where it gives out. Each client is a
+// virtual thread acting like a person at the customer dashboard, through the
+// same service calls the screens and the HTTP API make:
+//   login -> (browse -> maybe rent -> my rentals -> hold -> return,
+//             or browse -> maybe reserve ahead -> cancel later) ... -> logout
+// with exponential think times between steps. Searches pick models by a
+// Zipf distribution, so a few hot models draw most of the demand and their
+// cars run out first, as on a real Saturday morning.
+//
+//   java -Xmx2g LoadTest [options]   (or CarRentalSystem --load-test [options])
+//     --clients N[,N...]   concurrent clients; several values run as steps (default 200)
+//     --customers N        registered customers (default: the largest step)
+//     --cars N             fleet size, spread over -Drental.branches (default 10000)
+//     --duration S         seconds per step (default 60)
+//     --ramp S             clients start evenly over this many seconds (default 10)
+//     --think-ms MS        mean pause between steps (default 500)
+//     --hold-ms MS         mean time a car is kept before returning it (default 2000)
+//     --rent-ratio P       share of browses that try to rent (default 0.5)
+//     --reserve-ratio P    share of browses that reserve days ahead (default 0.1)
+//     --skew S             Zipf exponent of model popularity, 0 = uniform (default 1.2)
+//     --report S           seconds between progress lines (default 5)
+//     --csv FILE           also write the progress lines as CSV
+//
+// Data goes to a fresh temp directory, never the real journal. Passwords are
+// hashed with the configured cost (-Drental.passwords.iterations), so logins
+// cost what they cost in production; lower it to stress the rest.
+class LoadTest {
+    // {brand, model, list price}; earlier entries are the popular ones
+    private static final String[][] MODELS = {
+            {"Toyota", "Corolla", "45"}, {"Honda", "Civic", "48"}, {"Tesla", "Model 3", "110"},
+            {"Toyota", "RAV4", "65"}, {"Ford", "Mustang", "95"}, {"Hyundai", "Tucson", "58"},
+            {"Kia", "Sportage", "55"}, {"BMW", "3 Series", "120"}, {"Nissan", "Leaf", "50"},
+            {"Volkswagen", "Golf", "47"}, {"Mazda", "CX-5", "62"}, {"Audi", "A4", "115"}};
+    private static final String PASSWORD = "load-test";
+
+    enum Op { LOGIN, BROWSE, RENT, MY_RENTALS, RETURN, RESERVE, CANCEL, LOGOUT }
+
+    // Latencies for the whole step plus the current progress window
+    private static final class Stat {
+        final Metrics.Timer total = new Metrics.Timer();
+        volatile Metrics.Timer window = new Metrics.Timer();
+        final LongAdder errors = new LongAdder();
+
+        void record(long start, boolean ok) {
+            long nanos = System.nanoTime() - start;
+            total.recordNanos(nanos);
+            Metrics.Timer w = window;
+            w.recordNanos(nanos);
+            if (!ok) {
+                total.fail();
+                w.fail();
+            }
+        }
+    }
+
+    private static int[] clientSteps = {200};
+    private static int customers = -1, cars = 10_000, durationS = 60, rampS = 10, reportS = 5;
+    private static double thinkMs = 500, holdMs = 2000, rentRatio = 0.5, reserveRatio = 0.1, skew = 1.2;
+    private static Path csv;
+
+    private final Map<Op, Stat> stats = new LinkedHashMap<>();
+    private final ConcurrentLinkedQueue<String> errorSamples = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final double[] popularity = new double[MODELS.length]; // cumulative
+    private volatile boolean stop;
+
+    LoadTest() {
+        for (Op op : Op.values()) stats.put(op, new Stat());
+        double sum = 0;
+        for (int i = 0; i < MODELS.length; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            popularity[i] = sum;
+        }
+        for (int i = 0; i < MODELS.length; i++) popularity[i] /= sum;
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--clients":
+                    String[] steps = args[++i].split(",");
+                    clientSteps = new int[steps.length];
+                    for (int s = 0; s < steps.length; s++) clientSteps[s] = Integer.parseInt(steps[s].trim());
+                    break;
+                case "--customers": customers = Integer.parseInt(args[++i]); break;
+                case "--cars": cars = Integer.parseInt(args[++i]); break;
+                case "--duration": durationS = Integer.parseInt(args[++i]); break;
+                case "--ramp": rampS = Integer.parseInt(args[++i]); break;
+                case "--think-ms": thinkMs = Double.parseDouble(args[++i]); break;
+                case "--hold-ms": holdMs = Double.parseDouble(args[++i]); break;
+                case "--rent-ratio": rentRatio = Double.parseDouble(args[++i]); break;
+                case "--reserve-ratio": reserveRatio = Double.parseDouble(args[++i]); break;
+                case "--skew": skew = Double.parseDouble(args[++i]); break;
+                case "--report": reportS = Integer.parseInt(args[++i]); break;
+                case "--csv": csv = Paths.get(args[++i]); break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        int maxClients = 0;
+        for (int n : clientSteps) maxClients = Math.max(maxClients, n);
+        if (customers < 0) customers = maxClients;
+
+        isolateServiceFiles(); // before RentalService is touched
+        RentalService.ready();
+        populate();
+
+        try (PrintWriter out = csv == null ? null : new PrintWriter(Files.newBufferedWriter(csv))) {
+            if (out != null) out.println("step_clients,elapsed_s,active,ops_per_s,browse_p99_ms,rent_p99_ms,"
+                    + "rent_conflict_pct,errors,heap_used_mb,heap_committed_mb,gc_ms");
+            for (int n : clientSteps) new LoadTest().runStep(n, out);
+        }
+        System.exit(0); // journal and pricing threads would keep the JVM up
+    }
+
+    // ---- setup ----
+
+    private static void isolateServiceFiles() throws IOException {
+        Path dir = Files.createTempDirectory("rental-load");
+        System.setProperty("rental.journal.dir", dir.resolve("journal").toString());
+        System.setProperty("rental.customers", dir.resolve("customers.txt").toString());
+        System.out.println("Load test data in " + dir);
+    }
+
+    // Customers and cars through the bulk import path; one password hash shared by all
+    private static void populate() {
+        long start = System.nanoTime();
+        String hash = Passwords.hash(PASSWORD);
+        List<Customer> people = new ArrayList<>(customers);
+        for (int i = 0; i < customers; i++) {
+            people.add(new Customer("C" + RentalService.ids.next(), customerName(i), hash,
+                    "555-" + (1000 + i % 9000), "load" + i + "@example.com"));
+        }
+        RentalService.importFinished(RentalService.importCustomers(people, c -> { }));
+
+        List<Branch> branches = RentalService.branches.branches();
+        List<Car> fleet = new ArrayList<>(cars);
+        for (int i = 0; i < cars; i++) {
+            String[] m = MODELS[i % MODELS.length];
+            Car car = Car.create(m[0], m[1], Double.parseDouble(m[2]));
+            car.branch = branches.get(i % branches.size());
+            fleet.add(car);
+        }
+        RentalService.importFinished(RentalService.importCars(fleet, c -> { }));
+        RentalService.pricing.reprice();
+        System.out.printf(Locale.ROOT, "Population: %d customers, %d cars in %d branches (%.1f s)%n",
+                customers, RentalService.branches.size(), branches.size(), (System.nanoTime() - start) / 1e9);
+    }
+
+    private static String customerName(int i) {
+        return "Load Customer " + i;
+    }
+
+    // ---- one step ----
+
+    private void runStep(int clients, PrintWriter out) throws InterruptedException {
+        System.out.printf(Locale.ROOT, "%n== %d clients, %d s (ramp %d s, think %.0f ms, hold %.0f ms, skew %.2f)%n",
+                clients, durationS, rampS, thinkMs, holdMs, skew);
+        System.out.printf(Locale.ROOT, "%7s %7s %9s %11s %11s %9s %7s %9s %9s %7s%n", "time", "active", "ops/s",
+                "browse p99", "rent p99", "conflict", "errors", "heap MB", "commit MB", "gc ms");
+        long begin = System.nanoTime();
+        long end = begin + TimeUnit.SECONDS.toNanos(durationS);
+        List<Thread> threads = new ArrayList<>(clients);
+        for (int c = 0; c < clients; c++) {
+            int id = c;
+            long startAt = begin + TimeUnit.SECONDS.toNanos(rampS) * c / Math.max(1, clients);
+            threads.add(Thread.ofVirtual().name("load-client-" + c).start(() -> client(id % customers, startAt, end)));
+        }
+
+        long peakHeap = 0, lastGcMs = gcMillis(), lastOps = 0;
+        long next = begin;
+        while (System.nanoTime() < end) {
+            next += TimeUnit.SECONDS.toNanos(reportS);
+            long sleep = Math.min(next, end) - System.nanoTime();
+            if (sleep > 0) TimeUnit.NANOSECONDS.sleep(sleep);
+            double elapsed = (System.nanoTime() - begin) / 1e9;
+            Metrics.Timer browse = swap(Op.BROWSE), rent = swap(Op.RENT);
+            for (Op op : Op.values()) if (op != Op.BROWSE && op != Op.RENT) swap(op);
+            long ops = totalOps();
+            MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            long gcMs = gcMillis();
+            peakHeap = Math.max(peakHeap, heap.getUsed());
+            double window = Math.max(1e-3, Math.min(reportS, elapsed));
+            double opsPerS = (ops - lastOps) / window;
+            double conflict = pct(rent.failures(), rent.count());
+            long errors = 0;
+            for (Stat s : stats.values()) errors += s.errors.sum();
+            System.out.printf(Locale.ROOT, "%6.0fs %7d %9.0f %9.1fms %9.1fms %8.1f%% %7d %9.0f %9.0f %7d%n",
+                    elapsed, running.get(), opsPerS, browse.percentileMicros(0.99) / 1000,
+                    rent.percentileMicros(0.99) / 1000, conflict, errors, heap.getUsed() / 1e6,
+                    heap.getCommitted() / 1e6, gcMs - lastGcMs);
+            if (out != null) {
+                out.printf(Locale.ROOT, "%d,%.1f,%d,%.1f,%.3f,%.3f,%.2f,%d,%.1f,%.1f,%d%n", clients, elapsed,
+                        running.get(), opsPerS, browse.percentileMicros(0.99) / 1000,
+                        rent.percentileMicros(0.99) / 1000, conflict, errors, heap.getUsed() / 1e6,
+                        heap.getCommitted() / 1e6, gcMs - lastGcMs);
+                out.flush();
+            }
+            lastOps = ops;
+            lastGcMs = gcMs;
+        }
+        stop = true;
+        for (Thread t : threads) t.join(TimeUnit.SECONDS.toMillis(30));
+        summary(clients, (System.nanoTime() - begin) / 1e9, peakHeap);
+    }
+
+    private Metrics.Timer swap(Op op) {
+        Stat s = stats.get(op);
+        Metrics.Timer w = s.window;
+        s.window = new Metrics.Timer();
+        return w;
+    }
+
+    private long totalOps() {
+        long n = 0;
+        for (Stat s : stats.values()) n += s.total.count();
+        return n;
+    }
+
+    private void summary(int clients, double seconds, long peakHeap) {
+        System.out.printf(Locale.ROOT, "%n%-11s %9s %9s %9s %9s %9s %9s %9s %8s %7s%n", "operation", "count",
+                "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "refused", "errors");
+        long ops = 0, errors = 0;
+        for (Map.Entry<Op, Stat> e : stats.entrySet()) {
+            Metrics.Timer t = e.getValue().total;
+            long err = e.getValue().errors.sum();
+            ops += t.count();
+            errors += err;
+            if (t.count() == 0 && err == 0) continue;
+            System.out.printf(Locale.ROOT, "%-11s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %7.1f%% %7d%n",
+                    e.getKey().name().toLowerCase(Locale.ROOT), t.count(), t.count() / seconds,
+                    t.percentileMicros(0.50) / 1000, t.percentileMicros(0.90) / 1000,
+                    t.percentileMicros(0.99) / 1000, t.percentileMicros(0.999) / 1000, t.maxMicros() / 1000,
+                    pct(t.failures(), t.count()), err);
+        }
+        Metrics.Timer rent = stats.get(Op.RENT).total;
+        System.out.printf(Locale.ROOT, "%d clients: %.0f ops/s, rent conflicts %.1f%%, errors %.3f%%, peak heap %.0f MB%n",
+                clients, ops / seconds, pct(rent.failures(), rent.count()), pct(errors, ops + errors), peakHeap / 1e6);
+        for (String sample : errorSamples) System.out.println("  error: " + sample);
+    }
+
+    private static double pct(long part, long whole) {
+        return whole == 0 ? 0 : 100.0 * part / whole;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    // ---- one simulated customer ----
+
+    private void client(int customer, long startAt, long end) {
+        try {
+            long wait = startAt - System.nanoTime();
+            if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+            running.incrementAndGet();
+            try {
+                session(customerName(customer), end);
+            } finally {
+                running.decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void session(String name, long end) throws InterruptedException {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        while (!stop && System.nanoTime() < end) {
+            SessionManager.Session session = step(Op.LOGIN, () -> RentalService.login(name, PASSWORD), s -> s != null);
+            if (session == null) {
+                think(thinkMs * 4);
+                continue;
+            }
+            String me = session.user.getId();
+            int visits = 1 + rnd.nextInt(10); // browse rounds before logging out
+            for (int v = 0; v < visits && !stop && System.nanoTime() < end; v++) {
+                think(thinkMs);
+                if (RentalService.sessions.validate(session.token) == null) break; // what activeUser() checks
+                String[] model = MODELS[pickModel(rnd.nextDouble())];
+                FleetSearch.Page page = step(Op.BROWSE, () -> RentalService.branches.search(query(model[1])), p -> true);
+                if (page == null || page.cars.isEmpty()) continue;
+                Car car = page.cars.get(rnd.nextInt(Math.min(10, page.cars.size()))); // near the top of the page
+                double roll = rnd.nextDouble();
+                if (roll < rentRatio) {
+                    think(thinkMs);
+                    BookingResult rented = step(Op.RENT, () -> RentalService.rentCar(car.getCarId(), me), BookingResult::ok);
+                    if (rented == null || !rented.ok()) continue;
+                    step(Op.MY_RENTALS, () -> RentalService.branches.rentalsOf(me), l -> true);
+                    think(holdMs);
+                    step(Op.RETURN, () -> RentalService.returnCar(car.getCarId(), me), BookingResult::ok);
+                } else if (roll < rentRatio + reserveRatio) {
+                    think(thinkMs);
+                    LocalDate from = LocalDate.now().plusDays(1 + rnd.nextInt(14));
+                    LocalDate to = from.plusDays(1 + rnd.nextInt(4));
+                    BookingResult held = step(Op.RESERVE, () -> RentalService.reserve(car.getCarId(), me, from, to),
+                            BookingResult::ok);
+                    if (held != null && held.ok()) {
+                        think(holdMs);
+                        for (Reservation r : RentalService.branches.reservationsOf(me)) {
+                            if (r.carId.equals(car.getCarId())) {
+                                step(Op.CANCEL, () -> RentalService.cancelReservation(r.id), ok -> ok);
+                            }
+                        }
+                    }
+                }
+            }
+            step(Op.LOGOUT, () -> {
+                RentalService.logout(session.token);
+                return true;
+            }, ok -> true);
+            think(thinkMs * 2);
+        }
+    }
+
+    // The dashboard's search: a model name, free from today to tomorrow, cheapest first
+    private static FleetSearch.Query query(String text) {
+        FleetSearch.Query q = new FleetSearch.Query();
+        q.text = text;
+        q.from = LocalDate.now();
+        q.to = q.from.plusDays(1);
+        q.sort = FleetSearch.Sort.PRICE_ASC;
+        q.limit = CarRentalSystem.PAGE_SIZE;
+        return q;
+    }
+
+    private int pickModel(double u) {
+        for (int i = 0; i < popularity.length; i++) {
+            if (u < popularity[i]) return i;
+        }
+        return popularity.length - 1;
+    }
+
+    private static void think(double meanMs) throws InterruptedException {
+        if (meanMs <= 0) return;
+        double ms = -meanMs * Math.log(1 - ThreadLocalRandom.current().nextDouble());
+        Thread.sleep((long) Math.min(ms, meanMs * 10));
+    }
+
+    interface Action<T> {
+        T run() throws Exception;
+    }
+
+    interface Outcome<T> {
+        boolean ok(T result);
+    }
+
+    // Times one call; a thrown exception is an error and yields null
+    private <T> T step(Op op, Action<T> action, Outcome<T> outcome) {
+        Stat stat = stats.get(op);
+        long start = System.nanoTime();
+        try {
+            T result = action.run();
+            stat.record(start, outcome.ok(result));
+            return result;
+        } catch (Exception e) {
+            stat.errors.increment();
+            if (errorSamples.size() < 20) errorSamples.add(op + ": " + e);
+            return null;
+        }
+    }
+}
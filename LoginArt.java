@@ -0,0 +1,122 @@
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+// ===========================
+// LOGIN ARTWORK (cached)
+// ===========================
+// The login screen's gradient, car shape and tagline. The picture depends
+// only on its size, so it is drawn once into an image and every repaint after
+// that is a single image copy. The image is rebuilt when the size or the
+// screen scale changes (e.g. while the window is being resized).
+//
+// The image is opaque (the backdrop color fills the rounded corners), so a
+// paint is a plain copy with no alpha blending, only of the damaged clip, and
+// Swing doesn't repaint the parent underneath. It comes from the screen's
+// GraphicsConfiguration, so Java2D can keep a copy in video memory (a
+// "managed" image) without the contents-lost handling a VolatileImage needs.
+//
+// Paints are timed under ui.paint.illustration, rebuilds under
+// ui.render.illustration. EDT use only.
+class LoginArt {
+    static final String TITLE = "Car Rental Management System";
+    private static final String SUB1 = "Curated cars.";
+    private static final String SUB2 = "Effortless journeys.";
+    private static final Color CAR_BODY = new Color(255, 255, 255, 30);
+    private static final Color WHEELS = new Color(255, 255, 255, 60);
+    private static final Color SUBTITLE = new Color(245, 247, 250, 220);
+
+    private final Color backdrop, from, to;
+    private final Font titleFont, subtitleFont;
+
+    private BufferedImage image;       // null until the first paint
+    private int imageW, imageH;        // size it was drawn for, in component pixels
+    private double imageScaleX, imageScaleY;
+
+    LoginArt(Color backdrop, Color from, Color to, Font titleFont, Font subtitleFont) {
+        this.backdrop = backdrop;
+        this.from = from;
+        this.to = to;
+        this.titleFont = titleFont;
+        this.subtitleFont = subtitleFont;
+    }
+
+    // Paints the artwork over (0, 0, w, h); config may be null off screen
+    void paint(Graphics g, int w, int h, GraphicsConfiguration config) {
+        if (w <= 0 || h <= 0) return;
+        long start = System.nanoTime();
+        AffineTransform tx = ((Graphics2D) g).getTransform();
+        double sx = tx.getScaleX(), sy = tx.getScaleY(); // > 1 on HiDPI screens
+        if (image == null || w != imageW || h != imageH || sx != imageScaleX || sy != imageScaleY) {
+            rebuild(w, h, sx, sy, config);
+        }
+        Rectangle clip = g.getClipBounds();
+        if (clip == null || sx != 1 || sy != 1) {
+            g.drawImage(image, 0, 0, w, h, null);
+        } else {
+            Rectangle r = clip.intersection(new Rectangle(0, 0, w, h));
+            int x2 = r.x + r.width, y2 = r.y + r.height;
+            g.drawImage(image, r.x, r.y, x2, y2, r.x, r.y, x2, y2, null);
+        }
+        Metrics.UI_PAINT_ILLUSTRATION.record(start);
+    }
+
+    private void rebuild(int w, int h, double sx, double sy, GraphicsConfiguration config) {
+        long start = System.nanoTime();
+        int pw = (int) Math.ceil(w * sx), ph = (int) Math.ceil(h * sy);
+        if (image != null) image.flush();
+        image = config != null ? config.createCompatibleImage(pw, ph, Transparency.OPAQUE)
+                : new BufferedImage(pw, ph, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        try {
+            g2d.scale(sx, sy);
+            draw(g2d, w, h);
+        } finally {
+            g2d.dispose();
+        }
+        imageW = w;
+        imageH = h;
+        imageScaleX = sx;
+        imageScaleY = sy;
+        Metrics.UI_RENDER_ILLUSTRATION.record(start);
+    }
+
+    // The artwork itself, drawn straight onto g2d (uncached)
+    void draw(Graphics2D g2d, int w, int h) {
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+        g2d.setColor(backdrop);
+        g2d.fillRect(0, 0, w, h);
+
+        // Gradient background
+        g2d.setPaint(new GradientPaint(0, 0, from, w, h, to));
+        g2d.fillRoundRect(20, 20, w - 40, h - 40, 40, 40);
+
+        // Abstract "car" shape
+        int carWidth = (int) (w * 0.55);
+        int carHeight = (int) (h * 0.22);
+        int carX = (w - carWidth) / 2;
+        int carY = (h - carHeight) / 2;
+
+        g2d.setColor(CAR_BODY);
+        g2d.fillRoundRect(carX, carY, carWidth, carHeight, 40, 40);
+
+        g2d.setColor(WHEELS);
+        g2d.fillOval(carX + (int) (carWidth * 0.15), carY + (int) (carHeight * 0.55), 26, 26);
+        g2d.fillOval(carX + (int) (carWidth * 0.65), carY + (int) (carHeight * 0.55), 26, 26);
+
+        // Tagline
+        g2d.setFont(titleFont);
+        g2d.setColor(Color.WHITE);
+        FontMetrics fm = g2d.getFontMetrics();
+        g2d.drawString(TITLE, (w - fm.stringWidth(TITLE)) / 2, carY - 25);
+
+        g2d.setFont(subtitleFont);
+        g2d.setColor(SUBTITLE);
+        fm = g2d.getFontMetrics();
+        int sub1y = carY + carHeight + 30;
+        g2d.drawString(SUB1, (w - fm.stringWidth(SUB1)) / 2, sub1y);
+        g2d.drawString(SUB2, (w - fm.stringWidth(SUB2)) / 2, sub1y + 22);
+    }
+}
@@ -0,0 +1,278 @@
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// ===========================
+// METRICS
+// ===========================
+// Always-on counters and latency histograms for the service operations.
+// Recording is two nanoTime reads plus a few atomic increments, with no
+// allocation, so it stays enabled in production. Everything is published
+// as the JMX MBean "CarRental:type=Metrics" (jconsole, VisualVM), and
+// -Drental.metrics.logSeconds=N adds one summary line to stdout every N s.
+class Metrics {
+
+    // ---- counters and histograms ----
+
+    static final class Counter {
+        private final LongAdder count = new LongAdder();
+
+        void increment() { count.increment(); }
+
+        long get() { return count.sum(); }
+    }
+
+    // Log-linear histogram of nanosecond latencies: 16 sub-buckets per power
+    // of two, so every percentile is within ~6% of the true value.
+    static final class Timer {
+        private static final int SUB_BITS = 4;
+        private static final int SUB = 1 << SUB_BITS;
+        private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final Counter failures = new Counter();
+
+        // Usage: long t0 = System.nanoTime(); ... timer.record(t0);
+        void record(long startNanos) {
+            recordNanos(System.nanoTime() - startNanos);
+        }
+
+        void record(long startNanos, boolean ok) {
+            record(startNanos);
+            if (!ok) fail();
+        }
+
+        void recordNanos(long nanos) {
+            if (nanos < 0) nanos = 0;
+            buckets.incrementAndGet(bucket(nanos));
+            count.increment();
+            totalNanos.add(nanos);
+        }
+
+        // Operations that completed but were refused (bad password, car taken, ...)
+        void fail() { failures.increment(); }
+
+        long count() { return count.sum(); }
+
+        long failures() { return failures.get(); }
+
+        double meanMicros() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / 1000.0 / n;
+        }
+
+        // Upper bound of the bucket holding the q-quantile, in microseconds
+        double percentileMicros(double q) {
+            long[] snapshot = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) return upperBound(i) / 1000.0;
+            }
+            return upperBound(BUCKETS - 1) / 1000.0;
+        }
+
+        double maxMicros() {
+            for (int i = BUCKETS - 1; i >= 0; i--) {
+                if (buckets.get(i) != 0) return upperBound(i) / 1000.0;
+            }
+            return 0;
+        }
+
+        static int bucket(long v) {
+            if (v < SUB) return (int) v;
+            int exp = 63 - Long.numberOfLeadingZeros(v);
+            return (exp - SUB_BITS + 1) * SUB + (int) ((v >>> (exp - SUB_BITS)) & (SUB - 1));
+        }
+
+        static long upperBound(int index) {
+            if (index < SUB) return index;
+            int exp = index / SUB + SUB_BITS - 1;
+            long width = 1L << (exp - SUB_BITS);
+            return ((long) (SUB + index % SUB) << (exp - SUB_BITS)) + width - 1;
+        }
+    }
+
+    // ---- registry ----
+
+    private static final Map<String, Timer> TIMERS = new LinkedHashMap<>();
+    private static final Map<String, LongSupplier> GAUGES = new LinkedHashMap<>();
+
+    static final Timer LOGIN = timer("login");
+    static final Timer RENT = timer("rent");
+    static final Timer RETURN = timer("return");
+    static final Timer ADD_CAR = timer("addCar");
+    static final Timer REMOVE_CAR = timer("removeCar");
+    static final Timer REGISTER = timer("register");
+    static final Timer RESERVE = timer("reserve");
+    static final Timer AVAILABILITY = timer("availableBetween");
+    static final Timer SAVE_CUSTOMERS = timer("saveCustomers");
+    // One repricing pass: computing the price book, then rebuilding the search indexes for it
+    static final Timer PRICING_COMPUTE = timer("pricing.compute");
+    static final Timer PRICING_REINDEX = timer("pricing.reindex");
+    // Offering a freed car to the next waiter, whether or not anyone was waiting
+    static final Timer WAITLIST_DISPATCH = timer("waitlist.dispatch");
+    // Click-to-answer time of the login and registration screens, EDT hops included
+    static final Timer UI_LOGIN = timer("ui.login");
+    static final Timer UI_REGISTER = timer("ui.register");
+    // Paint time of the login artwork (image copies; rebuilds timed apart) and of fleet table cells
+    static final Timer UI_PAINT_ILLUSTRATION = timer("ui.paint.illustration");
+    static final Timer UI_RENDER_ILLUSTRATION = timer("ui.render.illustration");
+    static final Timer UI_PAINT_CELL = timer("ui.paint.cell");
+
+    private static synchronized Timer timer(String name) {
+        Timer t = new Timer();
+        TIMERS.put(name, t);
+        return t;
+    }
+
+    static synchronized void gauge(String name, LongSupplier value) {
+        GAUGES.put(name, value);
+    }
+
+    // Registers the MBean and, if configured, the periodic log line
+    static synchronized void publish() {
+        try {
+            ObjectName name = new ObjectName("CarRental:type=Metrics");
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new MBean(), name);
+            }
+        } catch (JMException e) {
+            System.err.println("Could not register metrics MBean: " + e.getMessage());
+        }
+        long every = Long.getLong("rental.metrics.logSeconds", 0);
+        if (every > 0) {
+            ScheduledExecutorService log = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "metrics-log");
+                t.setDaemon(true);
+                return t;
+            });
+            log.scheduleAtFixedRate(() -> System.out.println(summary()), every, every, TimeUnit.SECONDS);
+        }
+    }
+
+    // Copies of the registries, so gauges (which call into the service) and
+    // timers are read without holding the Metrics lock
+    private static synchronized Map<String, LongSupplier> gauges() { return new LinkedHashMap<>(GAUGES); }
+
+    private static synchronized Map<String, Timer> timers() { return new LinkedHashMap<>(TIMERS); }
+
+    // One line: gauges, then count/failures/p50/p99/p999 (us) per operation used so far
+    static String summary() {
+        StringBuilder sb = new StringBuilder("metrics");
+        for (Map.Entry<String, LongSupplier> g : gauges().entrySet()) {
+            sb.append(' ').append(g.getKey()).append('=').append(g.getValue().getAsLong());
+        }
+        for (Map.Entry<String, Timer> e : timers().entrySet()) {
+            Timer t = e.getValue();
+            if (t.count() == 0 && t.failures() == 0) continue;
+            sb.append(String.format(Locale.ROOT, " | %s n=%d fail=%d p50=%.0fus p99=%.0fus p999=%.0fus",
+                    e.getKey(), t.count(), t.failures(), t.percentileMicros(0.50),
+                    t.percentileMicros(0.99), t.percentileMicros(0.999)));
+        }
+        return sb.toString();
+    }
+
+    // ---- JMX ----
+
+    // Attributes are "<timer>.Count", "<timer>.P99Micros", ..., plus one per gauge
+    private static final class MBean implements DynamicMBean {
+        private static final String[] STATS = {"Count", "Failures", "MeanMicros", "P50Micros", "P99Micros", "P999Micros", "MaxMicros"};
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            LongSupplier gauge;
+            Timer t;
+            int dot = attribute.lastIndexOf('.');
+            synchronized (Metrics.class) { // look up under the lock, evaluate outside it
+                gauge = GAUGES.get(attribute);
+                t = dot < 0 ? null : TIMERS.get(attribute.substring(0, dot));
+            }
+            if (gauge != null) return gauge.getAsLong();
+            if (t != null) {
+                switch (attribute.substring(dot + 1)) {
+                    case "Count": return t.count();
+                    case "Failures": return t.failures();
+                    case "MeanMicros": return t.meanMicros();
+                    case "P50Micros": return t.percentileMicros(0.50);
+                    case "P99Micros": return t.percentileMicros(0.99);
+                    case "P999Micros": return t.percentileMicros(0.999);
+                    case "MaxMicros": return t.maxMicros();
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList out = new AttributeList();
+            for (String a : attributes) {
+                try {
+                    out.add(new Attribute(a, getAttribute(a)));
+                } catch (AttributeNotFoundException ignored) {
+                    // JMX convention: unknown names are left out
+                }
+            }
+            return out;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName), "Metrics has no operations");
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attrs = new ArrayList<>();
+            for (String g : gauges().keySet()) {
+                attrs.add(new MBeanAttributeInfo(g, "long", "Gauge " + g, true, false, false));
+            }
+            for (String t : timers().keySet()) {
+                for (String stat : STATS) {
+                    String type = stat.endsWith("Micros") ? "double" : "long";
+                    attrs.add(new MBeanAttributeInfo(t + "." + stat, type, t + " " + stat, true, false, false));
+                }
+            }
+            return new MBeanInfo(Metrics.class.getName(), "Car rental service metrics",
+                    attrs.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[0], null);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// ===========================
+// DYNAMIC PRICING
+// ===========================
+// Every few minutes (-Drental.pricing.intervalMinutes, default 5; 0 turns the
+// schedule off) the whole fleet is repriced. Each car's list price is scaled
+// by three factors, clamped to [MIN_FACTOR, MAX_FACTOR] and rounded to cents:
+//   utilization  share of the brand's cars out right now (0.8 idle .. 1.2 all out)
+//   demand       the brand's share of recent rentals against its share of the
+//                fleet, smoothed across passes (0.9 .. 1.25)
+//   time of day  rush hours 1.1, nights 0.9
+//
+// A pass reads the fleet slot arrays, splits them into blocks of BLOCK slots
+// and prices the blocks in parallel on the fork/join common pool, each into
+// its own range of a fresh double[] per branch. Nothing is written in place:
+// the arrays become a PriceBook, the search indexes are rebuilt against it,
+// and it is published with one volatile write. A reader that pins a book
+// (PricingEngine.current()) sees every car at that one version.
+//
+// Renting locks in the rate of the book current at that moment (see
+// Car.Booking.rate); later passes don't change what a running rental costs.
+class PricingEngine {
+    static final double MIN_FACTOR = 0.6, MAX_FACTOR = 1.6;
+    private static final int BLOCK = 1 << 14;
+    private static final double DEMAND_SMOOTHING = 0.5; // weight of the latest interval
+
+    private static volatile PriceBook published = PriceBook.LIST;
+
+    private final BranchRouter branches;
+    private final Consumer<PriceBook> onPublish;
+    private final ConcurrentHashMap<String, LongAdder> rentalsByBrand = new ConcurrentHashMap<>();
+    private final Map<String, Double> demand = new HashMap<>(); // smoothed rentals per brand; pass thread only
+    private long version;
+
+    PricingEngine(BranchRouter branches, Consumer<PriceBook> onPublish) {
+        this.branches = branches;
+        this.onPublish = onPublish;
+    }
+
+    // The book every reader should price from right now
+    static PriceBook current() { return published; }
+
+    // Counts toward the brand's demand at the next pass
+    void recordRental(Car car) {
+        rentalsByBrand.computeIfAbsent(car.getBrand(), b -> new LongAdder()).increment();
+    }
+
+    // Reprices on a daemon thread every -Drental.pricing.intervalMinutes, first pass at once
+    void start() {
+        long minutes = Long.getLong("rental.pricing.intervalMinutes", 5);
+        if (minutes <= 0) return;
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pricing");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                reprice();
+            } catch (RuntimeException e) { // keep the schedule alive
+                System.err.println("Pricing pass failed: " + e);
+            }
+        }, 0, minutes, TimeUnit.MINUTES);
+    }
+
+    // One full pass: compute, reindex search, publish
+    synchronized PriceBook reprice() {
+        PriceBook book = compute(LocalTime.now());
+        long start = System.nanoTime();
+        branches.fanOut(b -> {
+            b.search.prepare(book);
+            return null;
+        });
+        Metrics.PRICING_REINDEX.record(start);
+        published = book;
+        onPublish.accept(book);
+        return book;
+    }
+
+    // Prices every car without publishing anything
+    synchronized PriceBook compute(LocalTime now) {
+        long start = System.nanoTime();
+        List<Branch> all = branches.branches();
+        Branch[] bs = all.toArray(new Branch[0]);
+        Car[][] slots = new Car[bs.length][];
+        int[] sizes = new int[bs.length];
+        List<int[]> blocks = new ArrayList<>(); // {branch, from, to}
+        for (int b = 0; b < bs.length; b++) {
+            sizes[b] = bs[b].fleet.slotCount(); // before the array, which is at least this long
+            slots[b] = bs[b].fleet.slotArray();
+            for (int from = 0; from < sizes[b]; from += BLOCK) {
+                blocks.add(new int[]{b, from, Math.min(sizes[b], from + BLOCK)});
+            }
+        }
+
+        // Utilization and fleet share per brand
+        Map<String, int[]> counts = blocks.parallelStream()
+                .map(k -> countBlock(slots[k[0]], k[1], k[2]))
+                .reduce(new HashMap<>(), PricingEngine::merge);
+        Map<String, Double> factors = factors(counts, timeOfDay(now));
+
+        double[][] prices = new double[bs.length][];
+        for (int b = 0; b < bs.length; b++) prices[b] = new double[sizes[b]];
+        blocks.parallelStream().forEach(k -> priceBlock(slots[k[0]], prices[k[0]], k[1], k[2], factors));
+
+        PriceBook book = new PriceBook(++version, System.currentTimeMillis(), bs, prices, factors);
+        Metrics.PRICING_COMPUTE.record(start);
+        return book;
+    }
+
+    // Brand factor: utilization x smoothed demand x time of day (unclamped)
+    private Map<String, Double> factors(Map<String, int[]> counts, double timeOfDay) {
+        long fleet = 0, recent = 0;
+        Map<String, Long> rentals = new HashMap<>();
+        for (Map.Entry<String, LongAdder> e : rentalsByBrand.entrySet()) {
+            long n = e.getValue().sumThenReset();
+            rentals.put(e.getKey(), n);
+        }
+        for (Map.Entry<String, int[]> e : counts.entrySet()) {
+            String brand = e.getKey();
+            double smoothed = DEMAND_SMOOTHING * rentals.getOrDefault(brand, 0L)
+                    + (1 - DEMAND_SMOOTHING) * demand.getOrDefault(brand, 0.0);
+            demand.put(brand, smoothed);
+            fleet += e.getValue()[0];
+        }
+        demand.keySet().retainAll(counts.keySet()); // brands no longer in the fleet
+        double totalDemand = 0;
+        for (double d : demand.values()) totalDemand += d;
+
+        Map<String, Double> out = new HashMap<>();
+        for (Map.Entry<String, int[]> e : counts.entrySet()) {
+            int cars = e.getValue()[0], rented = e.getValue()[1];
+            double utilization = cars == 0 ? 0 : (double) rented / cars;
+            double fleetShare = fleet == 0 ? 0 : (double) cars / fleet;
+            double demandShare = totalDemand == 0 ? fleetShare : demand.get(e.getKey()) / totalDemand;
+            double ratio = fleetShare == 0 ? 1 : demandShare / fleetShare;
+            double demandFactor = Math.max(0.9, Math.min(1.25, 1 + 0.1 * (ratio - 1)));
+            out.put(e.getKey(), (0.8 + 0.4 * utilization) * demandFactor * timeOfDay);
+        }
+        return out;
+    }
+
+    static double timeOfDay(LocalTime t) {
+        int h = t.getHour();
+        if ((h >= 7 && h < 10) || (h >= 16 && h < 19)) return 1.1;
+        if (h >= 22 || h < 6) return 0.9;
+        return 1.0;
+    }
+
+    static double price(double listPrice, double factor) {
+        double f = Math.max(MIN_FACTOR, Math.min(MAX_FACTOR, factor));
+        return Math.round(listPrice * f * 100) / 100.0;
+    }
+
+    private static Map<String, int[]> countBlock(Car[] cars, int from, int to) {
+        Map<String, int[]> out = new HashMap<>();
+        String lastBrand = null;
+        int[] last = null;
+        for (int slot = from; slot < to; slot++) {
+            Car c = cars[slot];
+            if (c == null || c.isRetired()) continue;
+            if (c.getBrand() != lastBrand) { // names are shared instances (Car.canonical), runs are common
+                lastBrand = c.getBrand();
+                last = out.computeIfAbsent(lastBrand, b -> new int[2]);
+            }
+            last[0]++;
+            if (!c.isAvailable()) last[1]++;
+        }
+        return out;
+    }
+
+    private static Map<String, int[]> merge(Map<String, int[]> a, Map<String, int[]> b) {
+        Map<String, int[]> out = new HashMap<>(a);
+        for (Map.Entry<String, int[]> e : b.entrySet()) {
+            int[] sum = out.get(e.getKey());
+            out.put(e.getKey(), sum == null ? e.getValue()
+                    : new int[]{sum[0] + e.getValue()[0], sum[1] + e.getValue()[1]});
+        }
+        return out;
+    }
+
+    private static void priceBlock(Car[] cars, double[] prices, int from, int to, Map<String, Double> factors) {
+        String lastBrand = null;
+        double factor = 1;
+        for (int slot = from; slot < to; slot++) {
+            Car c = cars[slot];
+            if (c == null) {
+                prices[slot] = Double.NaN;
+                continue;
+            }
+            if (c.getBrand() != lastBrand) {
+                lastBrand = c.getBrand();
+                factor = factors.getOrDefault(lastBrand, 1.0);
+            }
+            prices[slot] = price(c.getListPrice(), factor);
+        }
+    }
+}
+
+// One consistent set of prices: per branch, the price of the car in each
+// fleet slot. Never modified after it is built.
+final class PriceBook {
+    static final PriceBook LIST = new PriceBook(0, 0, new Branch[0], new double[0][], Map.of());
+
+    final long version;    // 0 = list prices, before the first pass
+    final long computedAt; // epoch millis
+    private final Branch[] branches;
+    private final double[][] prices;
+    private final Map<String, Double> factors; // by brand, before clamping
+
+    PriceBook(long version, long computedAt, Branch[] branches, double[][] prices, Map<String, Double> factors) {
+        this.version = version;
+        this.computedAt = computedAt;
+        this.branches = branches;
+        this.prices = prices;
+        this.factors = factors;
+    }
+
+    // The car's price in this book; its list price if the car joined since
+    double priceOf(Car car) {
+        Branch b = car.branch;
+        int slot = car.slot;
+        if (b != null && slot >= 0) {
+            for (int i = 0; i < branches.length; i++) {
+                if (branches[i] != b) continue;
+                double[] p = prices[i];
+                if (slot < p.length && !Double.isNaN(p[slot])) return p[slot];
+                break;
+            }
+        }
+        return car.getListPrice();
+    }
+
+    double factor(String brand) {
+        return factors.getOrDefault(brand, 1.0);
+    }
+}
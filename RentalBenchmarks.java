@@ -0,0 +1,755 @@
+import javax.swing.JTable;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableModel;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+// ===========================
+// BENCHMARKS
+// ===========================
+// Microbenchmarks for the RentalService hot paths, run the way JMH runs them:
+// every benchmark/parameter pair gets its own forked JVM, warmup iterations
+// are discarded, and each measured iteration is a fixed slice of wall time.
+// Inputs come from fixed seeds, so two runs measure the same work.
+//
+//   javac *.java && java -Xmx4g RentalBenchmarks [options]
+//     --list                 print benchmark names and parameters
+//     --filter REGEX         only benchmarks whose name matches
+//     --forks N              JVM forks per benchmark (default 1, 0 = in-process)
+//     --warmup N             warmup iterations (default 3)
+//     --iterations N         measured iterations (default 5)
+//     --time MS              length of one iteration (default 1000)
+//     --json FILE            write results as JSON (JMH result layout)
+//     --footprint N          print retained heap per car for N cars held as
+//                            List<Car>, FleetStore, ColumnarFleet and RowCar
+//                            views over it, then exit
+//
+// Results go to stdout as a table; --json output can be diffed between runs
+// to track regressions.
+public class RentalBenchmarks {
+
+    // ---- benchmark definitions ----
+
+    // One prepared benchmark instance: run() does one operation
+    interface Op {
+        void run() throws Exception;
+    }
+
+    interface Setup {
+        Op prepare(long param, int threads) throws Exception;
+    }
+
+    static final class Bench {
+        final String name;
+        final boolean throughput; // ops/s across threads, otherwise avg time per op
+        final String unit;
+        final long[] params;
+        final int[] threads;
+        final Setup setup;
+
+        Bench(String name, boolean throughput, String unit, long[] params, int[] threads, Setup setup) {
+            this.name = name;
+            this.throughput = throughput;
+            this.unit = unit;
+            this.params = params;
+            this.threads = threads;
+            this.setup = setup;
+        }
+    }
+
+    private static final long[] CUSTOMER_SIZES = {1_000, 100_000, 1_000_000};
+    private static final long[] FLEET_SIZES = {1_000, 100_000};
+    private static final int[] ONE_THREAD = {1};
+    private static final Map<String, Bench> BENCHES = new LinkedHashMap<>();
+
+    private static void define(String name, boolean throughput, String unit, long[] params, int[] threads, Setup setup) {
+        BENCHES.put(name, new Bench(name, throughput, unit, params, threads, setup));
+    }
+
+    static {
+        define("customers.load.legacy", false, "ms", CUSTOMER_SIZES, ONE_THREAD, (n, t) -> {
+            Path file = writeCustomersFile((int) n);
+            return () -> blackhole(legacyLoad(file).size());
+        });
+        define("customers.load.parallel", false, "ms", CUSTOMER_SIZES, ONE_THREAD, (n, t) -> {
+            Path file = writeCustomersFile((int) n);
+            return () -> blackhole(CustomerFileLoader.load(file).customers.size());
+        });
+        define("customers.save", false, "ms", CUSTOMER_SIZES, ONE_THREAD, (n, t) -> {
+            List<User> users = customers((int) n);
+            Path file = tempFile("customers-save", ".txt");
+            return () -> RentalService.writeCustomers(file, users);
+        });
+
+        define("login.scan", false, "us", CUSTOMER_SIZES, ONE_THREAD, (n, t) -> {
+            List<User> users = customers((int) n);
+            String[] names = lookupNames(n);
+            int[] i = {0};
+            return () -> {
+                String u = names[i[0]++ & (names.length - 1)];
+                for (User user : users) {
+                    if (user.getName().equalsIgnoreCase(u) && user.checkPassword("pw")) {
+                        blackhole(1);
+                        break;
+                    }
+                }
+            };
+        });
+        define("login.index", false, "us", CUSTOMER_SIZES, ONE_THREAD, (n, t) -> {
+            UserDirectory dir = new UserDirectory();
+            for (User u : customers((int) n)) dir.add(u);
+            String[] names = lookupNames(n);
+            int[] i = {0};
+            return () -> {
+                User user = dir.findByName(names[i[0]++ & (names.length - 1)]);
+                blackhole(user != null && user.checkPassword("pw") ? 1 : 0);
+            };
+        });
+
+        define("car.lookup.scan", false, "us", FLEET_SIZES, ONE_THREAD, (n, t) -> {
+            List<Car> cars = cars((int) n);
+            String[] ids = lookupCarIds(n);
+            int[] i = {0};
+            return () -> {
+                String carId = ids[i[0]++ & (ids.length - 1)];
+                blackhole(cars.stream().filter(c -> c.getCarId().equals(carId)).findFirst().orElse(null));
+            };
+        });
+        define("car.lookup.index", false, "us", FLEET_SIZES, ONE_THREAD, (n, t) -> {
+            FleetStore store = new FleetStore();
+            for (Car c : cars((int) n)) store.add(c);
+            String[] ids = lookupCarIds(n);
+            int[] i = {0};
+            return () -> blackhole(store.find(ids[i[0]++ & (ids.length - 1)]));
+        });
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        define("booking.rentReturn", true, "ops/s", new long[]{1_000}, new int[]{1, 4, cores}, (n, threads) -> {
+            // Through RentalService (journal included, fsync off), one renter per thread
+            RentalService.ready();
+            List<String> ids = new ArrayList<>();
+            while (ids.size() < n) {
+                ids.add(RentalService.addCar("Brand" + (ids.size() % 20), "Model" + (ids.size() % 50), 50).getCarId());
+            }
+            AtomicLong nextRenter = new AtomicLong();
+            ThreadLocal<String> renter = ThreadLocal.withInitial(() -> "BENCH" + nextRenter.incrementAndGet());
+            ThreadLocal<Random> rnd = ThreadLocal.withInitial(() -> new Random(nextRenter.get() * 31));
+            return () -> {
+                String carId = ids.get(rnd.get().nextInt(ids.size()));
+                String me = renter.get();
+                if (RentalService.rentCar(carId, me).ok()) RentalService.returnCar(carId, me);
+            };
+        });
+
+        define("branches.rentReturn", true, "ops/s", new long[]{1, 4}, new int[]{1, 4, cores}, (n, threads) -> {
+            // Rent + return through the router's per-branch indexes (no journal), n branches of 1000 cars
+            BranchRouter router = shardedFleet((int) n, 1_000);
+            List<Car> all = router.all();
+            AtomicLong nextRenter = new AtomicLong();
+            ThreadLocal<String> renter = ThreadLocal.withInitial(() -> "BENCH" + nextRenter.incrementAndGet());
+            ThreadLocal<Random> rnd = ThreadLocal.withInitial(() -> new Random(nextRenter.get() * 31));
+            return () -> {
+                Car car = all.get(rnd.get().nextInt(all.size()));
+                String me = renter.get();
+                if (car.rent(me) >= 0) {
+                    router.sync(car);
+                    if (car.returnCar(me) != null) router.sync(car);
+                }
+            };
+        });
+        define("branches.availableAnywhere", false, "us", new long[]{1, 4, 8}, ONE_THREAD, (n, t) -> {
+            // Fork/join fan-out over n branches sharing 100k cars, merged in branch order
+            BranchRouter router = shardedFleet((int) n, 100_000 / (int) n);
+            return () -> blackhole(router.available());
+        });
+        define("reservations.availableBetween", false, "us", FLEET_SIZES, ONE_THREAD, (n, t) -> {
+            // Four months of back-to-back bookings on every car, then 3-day queries
+            FleetStore store = new FleetStore();
+            ReservationBook book = new ReservationBook();
+            Random rnd = new Random(3);
+            long today = java.time.LocalDate.now().toEpochDay();
+            int booked = 0;
+            for (Car c : cars((int) n)) {
+                store.add(c);
+                for (long d = today + rnd.nextInt(10); d < today + 120; d += 1 + rnd.nextInt(10)) {
+                    long len = 1 + rnd.nextInt(7);
+                    book.add(c, new Reservation("R" + booked++, c.getCarId(), "C1", d, d + len), Long.MIN_VALUE);
+                    d += len;
+                }
+            }
+            int[] i = {0};
+            return () -> {
+                long from = today + 1 + (i[0]++ % 90);
+                blackhole(store.allExcept(book.bookedSlots(from, from + 3, store.slotCount()), false));
+            };
+        });
+        define("search.keystroke", false, "us", new long[]{100_000, 1_000_000}, ONE_THREAD, (n, t) -> {
+            // Typing "tesla m" one key at a time over available cars, priced 60-150, by price
+            FleetStore store = new FleetStore();
+            for (Car c : cars((int) n)) store.add(c);
+            FleetSearch search = new FleetSearch(store, new ReservationBook());
+            String typed = "tesla m";
+            int[] i = {0};
+            return () -> {
+                FleetSearch.Query q = new FleetSearch.Query();
+                q.text = typed.substring(0, 1 + i[0]++ % typed.length());
+                q.availableNow = true;
+                q.minPrice = 60;
+                q.maxPrice = 150;
+                q.sort = FleetSearch.Sort.PRICE_ASC;
+                q.limit = 200;
+                blackhole(search.search(q));
+            };
+        });
+        define("fleet.scan.objects", false, "us", new long[]{100_000, 1_000_000}, ONE_THREAD, (n, t) -> {
+            // Available cars priced 60-80 across a List<Car>: one pointer chase per car and per booking
+            List<Car> cars = cars((int) n);
+            return () -> {
+                List<Car> out = new ArrayList<>();
+                for (Car c : cars) {
+                    if (c.isAvailable() && c.getPrice() >= 60 && c.getPrice() <= 80) out.add(c);
+                }
+                blackhole(out);
+            };
+        });
+        define("fleet.scan.columnar", false, "us", new long[]{100_000, 1_000_000}, ONE_THREAD, (n, t) -> {
+            // The same query over ColumnarFleet: the availability bitset, then the price column
+            ColumnarFleet fleet = columnarFleet((int) n);
+            return () -> blackhole(fleet.availableWithin(60, 80));
+        });
+        define("pricing.compute", false, "ms", new long[]{100_000, 1_000_000}, ONE_THREAD, (n, t) -> {
+            // One repricing pass over n cars in 4 branches, without publishing
+            PricingEngine engine = new PricingEngine(shardedFleet(4, (int) n / 4), book -> { });
+            return () -> blackhole(engine.compute(LocalTime.NOON));
+        });
+        define("pricing.reprice", false, "ms", new long[]{100_000, 1_000_000}, ONE_THREAD, (n, t) -> {
+            // The full pass: compute, rebuild the branch search indexes, publish
+            PricingEngine engine = new PricingEngine(shardedFleet(4, (int) n / 4), book -> { });
+            return () -> blackhole(engine.reprice());
+        });
+        define("ledger.report", false, "us", new long[]{100_000, 1_000_000}, ONE_THREAD, (n, t) -> {
+            // Admin report over n completed rentals (500 customers, 1000 cars, 4 brands)
+            RentalLedger ledger = new RentalLedger();
+            String[] brands = {"Toyota", "Honda", "Tesla", "Ford"};
+            long day = RentalLedger.DAY_MS, start = System.currentTimeMillis() - 365 * day;
+            for (int i = 0; i < n; i++) {
+                long from = start + (i % 365) * day;
+                ledger.append("V" + i % 1000, brands[i % brands.length], "C" + i % 500, from, from + (1 + i % 5) * day, 50);
+            }
+            return () -> blackhole(ledger.report(CarRentalSystem.REPORT_RECENT_ROWS));
+        });
+        define("sessions.login", true, "ops/s", new long[]{10_000, Passwords.ITERATIONS}, new int[]{1, cores},
+                (n, threads) -> {
+            // Password check at n PBKDF2 iterations plus opening (and closing) a session
+            UserDirectory dir = new UserDirectory();
+            dir.add(new Customer("C1", "Customer 1", Passwords.hash("pw", (int) n), "555-1", "c1@example.com"));
+            SessionManager sessions = new SessionManager(60_000);
+            return () -> {
+                User user = dir.findByName("customer 1");
+                if (user.checkPassword("pw")) sessions.close(sessions.open(user).token);
+            };
+        });
+        define("sessions.validate", true, "ops/s", new long[]{1_000, 100_000}, new int[]{1, 4, cores}, (n, threads) -> {
+            // Token check on every request, n live sessions, all threads reading
+            SessionManager sessions = new SessionManager(60_000);
+            User user = customers(1).get(0);
+            String[] tokens = new String[Integer.highestOneBit((int) n)];
+            for (int i = 0; i < tokens.length; i++) tokens[i] = sessions.open(user).token;
+            AtomicLong seed = new AtomicLong();
+            ThreadLocal<int[]> next = ThreadLocal.withInitial(() -> new int[]{(int) seed.getAndAdd(7919)});
+            return () -> {
+                int[] i = next.get();
+                blackhole(sessions.validate(tokens[i[0]++ & (tokens.length - 1)]));
+            };
+        });
+        define("ids.next", true, "ops/s", new long[]{0}, new int[]{1, 4, cores}, (n, threads) -> {
+            // Customer / car id minting, all threads sharing one generator
+            IdGenerator ids = new IdGenerator(0);
+            return () -> blackhole(ids.next());
+        });
+        define("metrics.record", true, "ops/s", new long[]{0}, new int[]{1, 4, cores}, (n, threads) -> {
+            // What instrumentation adds to every timed service call
+            Metrics.Timer timer = new Metrics.Timer();
+            return () -> timer.record(System.nanoTime());
+        });
+
+        define("table.rebuild.legacy", false, "ms", FLEET_SIZES, ONE_THREAD, (n, t) -> {
+            List<Car> cars = cars((int) n);
+            DefaultTableModel model = new DefaultTableModel(
+                    new String[]{"ID", "Brand", "Model", "Price/Day", "Status", "Renter ID"}, 0);
+            return () -> {
+                model.setRowCount(0);
+                for (Car c : cars) {
+                    String status = c.isAvailable() ? "Available" : "Rented";
+                    String renter = c.getCurrentRenterId() == null ? "-" : c.getCurrentRenterId();
+                    model.addRow(new Object[]{c.getCarId(), c.getBrand(), c.getModel(), "$" + c.getPrice(), status, renter});
+                }
+            };
+        });
+        define("table.reload", false, "ms", FLEET_SIZES, ONE_THREAD, (n, t) -> {
+            FleetStore store = new FleetStore();
+            for (Car c : cars((int) n)) store.add(c);
+            CarTableModel model = fleetTableModel(store);
+            return () -> model.setRows(store.all());
+        });
+        define("table.refreshRow", false, "us", FLEET_SIZES, ONE_THREAD, (n, t) -> {
+            FleetStore store = new FleetStore();
+            for (Car c : cars((int) n)) store.add(c);
+            CarTableModel model = fleetTableModel(store);
+            model.setRows(store.all());
+            String[] ids = lookupCarIds(n);
+            int[] i = {0};
+            return () -> model.refresh(store.find(ids[i[0]++ & (ids.length - 1)]));
+        });
+        define("table.paint.default", false, "us", new long[]{40}, ONE_THREAD, (n, t) -> {
+            // One repaint of n visible rows: values formatted per paint, stock renderer
+            List<Car> cars = cars((int) n);
+            CarTableModel.Column[] cols = CarTableModel.Column.values();
+            PriceBook book = PricingEngine.current();
+            JTable table = new JTable(new AbstractTableModel() {
+                public int getRowCount() { return cars.size(); }
+                public int getColumnCount() { return cols.length; }
+                public Object getValueAt(int row, int column) {
+                    Car c = cars.get(row);
+                    CarTableModel.Column col = cols[column];
+                    if (!col.isPrice()) return col.value(c);
+                    double price = book.priceOf(c);
+                    return col == CarTableModel.Column.PRICE ? String.valueOf(price) : "$" + price;
+                }
+            });
+            return paintCells(table);
+        });
+        define("table.paint.cached", false, "us", new long[]{40}, ONE_THREAD, (n, t) -> {
+            // The same repaint through CarTableModel's cached texts and CarCellRenderer
+            CarTableModel model = new CarTableModel(() -> cars((int) n), c -> true, CarTableModel.Column.values());
+            model.setRows(cars((int) n));
+            JTable table = new JTable(model);
+            CarCellRenderer.install(table);
+            return paintCells(table);
+        });
+        define("ui.illustration.draw", false, "us", new long[]{520, 1040}, ONE_THREAD, (n, t) -> {
+            // Login artwork n px wide, drawn from scratch on every paint (the old paintComponent)
+            LoginArt art = loginArt();
+            Graphics2D g = new BufferedImage((int) n, 650, BufferedImage.TYPE_INT_RGB).createGraphics();
+            return () -> art.draw(g, (int) n, 650);
+        });
+        define("ui.illustration.cached", false, "us", new long[]{520, 1040}, ONE_THREAD, (n, t) -> {
+            // The same paint once the size-keyed image exists
+            LoginArt art = loginArt();
+            Graphics2D g = new BufferedImage((int) n, 650, BufferedImage.TYPE_INT_RGB).createGraphics();
+            return () -> art.paint(g, (int) n, 650, null);
+        });
+
+        define("snapshot.write", false, "ms", new long[]{1_000_000}, ONE_THREAD, (n, t) -> {
+            List<User> users = customers((int) n);
+            List<Car> cars = cars((int) (n / 10));
+            Path file = tempFile("snapshot-bench", ".bin");
+            return () -> StateSnapshot.write(file, users, cars, List.of());
+        });
+        define("snapshot.load", false, "ms", new long[]{1_000_000}, ONE_THREAD, (n, t) -> {
+            Path file = tempFile("snapshot-bench", ".bin");
+            StateSnapshot.write(file, customers((int) n), cars((int) (n / 10)), List.of());
+            return () -> blackhole(StateSnapshot.read(file).customers.size());
+        });
+    }
+
+    // ---- driver ----
+
+    static final class Result {
+        final Bench bench;
+        final long param;
+        final int threads;
+        final List<Double> scores = new ArrayList<>();
+
+        Result(Bench bench, long param, int threads) {
+            this.bench = bench;
+            this.param = param;
+            this.threads = threads;
+        }
+
+        double mean() {
+            double sum = 0;
+            for (double s : scores) sum += s;
+            return sum / scores.size();
+        }
+
+        // Half-width of a ~99.9% interval (normal approximation), like JMH's score error
+        double error() {
+            if (scores.size() < 2) return Double.NaN;
+            double m = mean(), var = 0;
+            for (double s : scores) var += (s - m) * (s - m);
+            return 3.29 * Math.sqrt(var / (scores.size() - 1)) / Math.sqrt(scores.size());
+        }
+    }
+
+    private static int forks = 1, warmup = 3, iterations = 5;
+    private static long iterationMs = 1000;
+
+    public static void main(String[] args) throws Exception {
+        Pattern filter = null;
+        Path json = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--list":
+                    for (Bench b : BENCHES.values()) {
+                        System.out.println(b.name + " params=" + java.util.Arrays.toString(b.params)
+                                + " threads=" + java.util.Arrays.toString(b.threads));
+                    }
+                    return;
+                case "--filter": filter = Pattern.compile(args[++i]); break;
+                case "--forks": forks = Integer.parseInt(args[++i]); break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--iterations": iterations = Integer.parseInt(args[++i]); break;
+                case "--time": iterationMs = Long.parseLong(args[++i]); break;
+                case "--json": json = Paths.get(args[++i]); break;
+                case "--footprint":
+                    footprint(Integer.parseInt(args[++i]));
+                    return;
+                case "--fork-child":
+                    runChild(args[i + 1], Long.parseLong(args[i + 2]), Integer.parseInt(args[i + 3]));
+                    return;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (Bench b : BENCHES.values()) {
+            if (filter != null && !filter.matcher(b.name).find()) continue;
+            for (long param : b.params) {
+                for (int threads : b.threads) {
+                    Result r = new Result(b, param, threads);
+                    for (int f = 0; f < Math.max(1, forks); f++) {
+                        r.scores.addAll(forks == 0 ? measure(b, param, threads) : fork(b, param, threads));
+                    }
+                    System.out.printf(Locale.ROOT, "%-26s n=%-9d threads=%-3d %14.3f ± %8.3f %s%n",
+                            b.name, param, threads, r.mean(), r.error(), unit(b));
+                    results.add(r);
+                }
+            }
+        }
+        if (json != null) {
+            writeJson(json, results);
+            System.out.println("Results written to " + json);
+        }
+    }
+
+    private static String unit(Bench b) {
+        return b.throughput ? b.unit : b.unit + "/op";
+    }
+
+    // ---- memory footprint ----
+
+    // Retained heap of each fleet layout, measured as the heap in use after a
+    // full GC with and without it. Run with a fixed heap and the serial
+    // collector for steady numbers, e.g.
+    //   java -XX:+UseSerialGC -Xms4g -Xmx4g RentalBenchmarks --footprint 1000000
+    private static void footprint(int n) {
+        System.out.printf(Locale.ROOT, "%-14s %12s %10s%n", "layout", "MB", "bytes/car");
+        printFootprint("List<Car>", n, () -> cars(n));
+        printFootprint("FleetStore", n, () -> {
+            FleetStore store = new FleetStore();
+            for (Car c : cars(n)) store.add(c);
+            return store;
+        });
+        printFootprint("ColumnarFleet", n, () -> columnarFleet(n));
+        printFootprint("RowCar views", n, () -> {
+            // what -Drental.fleet.storage=columnar holds: the rows plus one view per car
+            ColumnarFleet fleet = columnarFleet(n);
+            List<Car> views = new ArrayList<>(n);
+            for (int row = 0; row < n; row++) views.add(fleet.view(row));
+            return views;
+        });
+    }
+
+    private static void printFootprint(String name, int n, Supplier<Object> build) {
+        long before = usedAfterGc();
+        Object held = build.get();
+        long after = usedAfterGc();
+        Reference.reachabilityFence(held);
+        System.out.printf(Locale.ROOT, "%-14s %12.1f %10.1f%n", name, (after - before) / 1e6, (after - before) / (double) n);
+    }
+
+    private static long usedAfterGc() {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) { // until a collection frees nothing more
+            System.gc();
+            long now = rt.totalMemory() - rt.freeMemory();
+            if (now >= used) break;
+            used = now;
+        }
+        return used;
+    }
+
+    // Runs one benchmark in a fresh JVM with the same classpath and JVM flags
+    private static List<Double> fork(Bench b, long param, int threads) throws IOException, InterruptedException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(ProcessHandle.current().info().command().orElse("java"));
+        cmd.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add(RentalBenchmarks.class.getName());
+        cmd.addAll(List.of("--warmup", "" + warmup, "--iterations", "" + iterations, "--time", "" + iterationMs));
+        cmd.addAll(List.of("--fork-child", b.name, "" + param, "" + threads));
+        Process p = new ProcessBuilder(cmd).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        List<Double> scores = new ArrayList<>();
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+            String line;
+            while ((line = out.readLine()) != null) {
+                if (line.startsWith("SCORE ")) scores.add(Double.parseDouble(line.substring(6)));
+            }
+        }
+        if (p.waitFor() != 0) throw new IllegalStateException("Fork failed for " + b.name + " n=" + param);
+        return scores;
+    }
+
+    private static void runChild(String name, long param, int threads) throws Exception {
+        for (double s : measure(BENCHES.get(name), param, threads)) {
+            System.out.println("SCORE " + s);
+        }
+        System.exit(0); // don't wait for the journal or other non-daemon threads
+    }
+
+    private static List<Double> measure(Bench b, long param, int threads) throws Exception {
+        isolateServiceFiles();
+        Op op = b.setup.prepare(param, threads);
+        List<Double> scores = new ArrayList<>();
+        for (int i = 0; i < warmup + iterations; i++) {
+            double score = iteration(b, op, threads);
+            if (i >= warmup) scores.add(score);
+        }
+        return scores;
+    }
+
+    // One timed slice: every thread loops on the op until the deadline
+    private static double iteration(Bench b, Op op, int threads) throws Exception {
+        AtomicLong ops = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        Exception[] failure = new Exception[1];
+        long[] window = new long[2];
+        for (int t = 0; t < threads; t++) {
+            Thread w = new Thread(() -> {
+                long done = 0;
+                try {
+                    start.await();
+                    long deadline = window[0] + iterationMs * 1_000_000L;
+                    do {
+                        op.run();
+                        done++;
+                    } while (System.nanoTime() < deadline);
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+                ops.addAndGet(done);
+            });
+            w.start();
+            workers.add(w);
+        }
+        window[0] = System.nanoTime();
+        start.countDown();
+        for (Thread w : workers) w.join();
+        window[1] = System.nanoTime();
+        if (failure[0] != null) throw failure[0];
+
+        double seconds = (window[1] - window[0]) / 1e9;
+        if (b.throughput) return ops.get() / seconds;
+        double perOpSeconds = seconds * threads / ops.get();
+        switch (b.unit) {
+            case "ms": return perOpSeconds * 1e3;
+            case "us": return perOpSeconds * 1e6;
+            default: return perOpSeconds * 1e9;
+        }
+    }
+
+    // Keeps benchmarks away from the real customers.txt and journal
+    private static void isolateServiceFiles() throws IOException {
+        if (System.getProperty("rental.journal.dir") != null) return;
+        Path dir = Files.createTempDirectory("rental-bench");
+        System.setProperty("rental.journal.dir", dir.resolve("journal").toString());
+        System.setProperty("rental.journal.fsync", System.getProperty("bench.fsync", "never"));
+        System.setProperty("rental.customers", dir.resolve("customers.txt").toString());
+    }
+
+    private static void writeJson(Path file, List<Result> results) throws IOException {
+        StringBuilder sb = new StringBuilder("[\n");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            StringBuilder raw = new StringBuilder("[");
+            for (int s = 0; s < r.scores.size(); s++) {
+                if (s > 0) raw.append(',');
+                raw.append(r.scores.get(s));
+            }
+            raw.append(']');
+            String metric = Json.object("score", num(r.mean()), "scoreError", num(r.error()),
+                    "scoreUnit", Json.quote(unit(r.bench)), "rawData", "[" + raw + "]");
+            sb.append("  ").append(Json.object(
+                    "benchmark", Json.quote(r.bench.name),
+                    "mode", Json.quote(r.bench.throughput ? "thrpt" : "avgt"),
+                    "threads", "" + r.threads,
+                    "forks", "" + forks,
+                    "jvm", Json.quote(System.getProperty("java.vm.version")),
+                    "warmupIterations", "" + warmup,
+                    "warmupTime", Json.quote(iterationMs + " ms"),
+                    "measurementIterations", "" + iterations,
+                    "measurementTime", Json.quote(iterationMs + " ms"),
+                    "params", Json.object("n", Json.quote("" + r.param)),
+                    "primaryMetric", metric));
+            sb.append(i + 1 < results.size() ? ",\n" : "\n");
+        }
+        Files.writeString(file, sb.append("]\n").toString());
+    }
+
+    private static String num(double d) {
+        return Double.isNaN(d) ? "\"NaN\"" : Double.toString(d);
+    }
+
+    // ---- fixtures (fixed seeds, so every run sees the same data) ----
+
+    private static volatile Object sink;
+
+    static void blackhole(Object o) { sink = o; }
+
+    static List<User> customers(int n) {
+        List<User> users = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            users.add(new Customer("C" + (1765985320619L + i), "Customer " + i, "pw", "555-" + i,
+                    "customer" + i + "@example.com"));
+        }
+        return users;
+    }
+
+    static BranchRouter shardedFleet(int branches, int carsPerBranch) {
+        String[] names = new String[branches];
+        for (int b = 0; b < branches; b++) names[b] = "B" + b;
+        BranchRouter router = new BranchRouter(names);
+        List<Car> cars = cars(branches * carsPerBranch);
+        for (int i = 0; i < cars.size(); i++) router.add(router.branches().get(i / carsPerBranch), cars.get(i));
+        return router;
+    }
+
+    static List<Car> cars(int n) {
+        String[][] models = {{"Toyota", "Camry"}, {"Honda", "Civic"}, {"Tesla", "Model 3"}, {"Ford", "Mustang"}};
+        List<Car> cars = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String[] m = models[i % models.length];
+            Car car = Car.create("V" + i, m[0], m[1], 50 + i % 100);
+            if (i % 3 == 0) car.rent("C" + (1765985320619L + i));
+            cars.add(car);
+        }
+        return cars;
+    }
+
+    // The cars of cars(n), with the same bookings, in columns
+    static ColumnarFleet columnarFleet(int n) {
+        ColumnarFleet fleet = new ColumnarFleet();
+        for (Car car : cars(n)) {
+            int row = fleet.add(car);
+            Car.Booking b = car.booking();
+            if (!b.isFree()) fleet.rent(row, b.renterId, b.since, b.rate);
+        }
+        return fleet;
+    }
+
+    // 1024 lookup keys (power of two so the index wraps with a mask)
+    private static String[] lookupNames(long n) {
+        Random rnd = new Random(42);
+        String[] out = new String[1024];
+        for (int i = 0; i < out.length; i++) out[i] = "customer " + rnd.nextInt((int) n);
+        return out;
+    }
+
+    private static String[] lookupCarIds(long n) {
+        Random rnd = new Random(7);
+        String[] out = new String[1024];
+        for (int i = 0; i < out.length; i++) out[i] = "V" + rnd.nextInt((int) n);
+        return out;
+    }
+
+    // Renders and paints every visible cell the way JTable's UI does, into an image
+    private static Op paintCells(JTable table) {
+        table.setSize(900, table.getRowHeight() * table.getRowCount());
+        Graphics2D g = new BufferedImage(900, table.getRowHeight(), BufferedImage.TYPE_INT_ARGB_PRE).createGraphics();
+        return () -> {
+            for (int row = 0; row < table.getRowCount(); row++) {
+                for (int col = 0; col < table.getColumnCount(); col++) {
+                    Component c = table.prepareRenderer(table.getCellRenderer(row, col), row, col);
+                    c.setBounds(0, 0, 120, table.getRowHeight());
+                    c.paint(g);
+                }
+            }
+        };
+    }
+
+    private static LoginArt loginArt() {
+        return new LoginArt(new Color(245, 247, 250), new Color(22, 33, 62), new Color(64, 115, 158), new Font("Segoe UI", Font.BOLD, 32),
+                new Font("Segoe UI", Font.PLAIN, 16));
+    }
+
+    private static CarTableModel fleetTableModel(FleetStore store) {
+        return new CarTableModel(store::all, c -> !c.isRetired(),
+                CarTableModel.Column.ID, CarTableModel.Column.BRAND, CarTableModel.Column.MODEL,
+                CarTableModel.Column.PRICE_PER_DAY, CarTableModel.Column.STATUS, CarTableModel.Column.RENTER);
+    }
+
+    private static Path tempFile(String prefix, String suffix) throws IOException {
+        Path file = Files.createTempFile(prefix, suffix);
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    static Path writeCustomersFile(int n) throws IOException {
+        Path file = tempFile("customers-bench", ".txt");
+        try (BufferedWriter w = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < n; i++) {
+                w.write("C" + (1765985320619L + i) + "|Customer " + i + "|pw" + i + "|555-" + (1000 + i % 9000)
+                        + "|customer" + i + "@example.com");
+                w.newLine();
+            }
+        }
+        return file;
+    }
+
+    // The loader RentalService used before CustomerFileLoader
+    static List<Customer> legacyLoad(Path file) throws IOException {
+        List<Customer> out = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                String[] parts = line.split("\\|");
+                if (parts.length == 5) {
+                    out.add(new Customer(parts[0], parts[1], parts[2], parts[3], parts[4]));
+                }
+            }
+        }
+        return out;
+    }
+}
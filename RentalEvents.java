@@ -0,0 +1,120 @@
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// ===========================
+// CHANGE EVENTS
+// ===========================
+// RentalService publishes one event per successful mutation. Delivery is
+// synchronous on the publishing thread, so subscribers must be cheap; the
+// Swing screens subscribe through an EdtCoalescer, which queues events and
+// hands the EDT one de-duplicated batch at a time.
+class RentalEvent {
+    enum Kind { CAR_ADDED, CAR_REMOVED, CAR_RENTED, CAR_RETURNED, CAR_RESERVED, RESERVATION_CANCELLED, CUSTOMER_REGISTERED,
+        BULK_IMPORTED, PRICES_UPDATED, OFFER_OPENED, OFFER_CLOSED }
+
+    final Kind kind;
+    final Car car;   // null for CUSTOMER_REGISTERED, BULK_IMPORTED and PRICES_UPDATED
+    final User user; // the customer registered, or the waiter a car is offered to; otherwise null
+
+    private RentalEvent(Kind kind, Car car, User user) {
+        this.kind = kind;
+        this.car = car;
+        this.user = user;
+    }
+
+    static RentalEvent car(Kind kind, Car car) { return new RentalEvent(kind, car, null); }
+    static RentalEvent customerRegistered(User user) { return new RentalEvent(Kind.CUSTOMER_REGISTERED, null, user); }
+
+    // A freed car was offered to a waiter (Waitlist), or that offer ended
+    static RentalEvent offer(Kind kind, Car car, User waiter) { return new RentalEvent(kind, car, waiter); }
+
+    // Many cars or customers arrived at once (an import, startup); screens reload instead of updating rows
+    static RentalEvent bulkImported() { return new RentalEvent(Kind.BULK_IMPORTED, null, null); }
+
+    // A repricing pass published a new PriceBook; screens reload to show it
+    static RentalEvent pricesUpdated() { return new RentalEvent(Kind.PRICES_UPDATED, null, null); }
+}
+
+class EventBus {
+    private final List<Consumer<RentalEvent>> subscribers = new CopyOnWriteArrayList<>();
+
+    void subscribe(Consumer<RentalEvent> subscriber) { subscribers.add(subscriber); }
+
+    void unsubscribe(Consumer<RentalEvent> subscriber) { subscribers.remove(subscriber); }
+
+    void publish(RentalEvent event) {
+        for (Consumer<RentalEvent> s : subscribers) {
+            try {
+                s.accept(event);
+            } catch (RuntimeException e) {
+                System.err.println("Event subscriber failed: " + e);
+            }
+        }
+    }
+}
+
+// Collects events from any thread and delivers them to the EDT at most once
+// per window, with each car listed once however often it changed. A burst of
+// thousands of changes therefore becomes a handful of UI updates.
+class EdtCoalescer implements Consumer<RentalEvent> {
+    static final int WINDOW_MS = 40;
+
+    static final class Batch {
+        final Set<Car> cars;
+        final List<User> registered;
+        final boolean reload; // a bulk import happened: reload everything
+
+        Batch(Set<Car> cars, List<User> registered, boolean reload) {
+            this.cars = cars;
+            this.registered = registered;
+            this.reload = reload;
+        }
+    }
+
+    private final ConcurrentLinkedQueue<RentalEvent> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Consumer<Batch> onEdt;
+    private final Timer timer;
+
+    EdtCoalescer(Consumer<Batch> onEdt) {
+        this.onEdt = onEdt;
+        this.timer = new Timer(WINDOW_MS, e -> flush());
+        this.timer.setRepeats(false);
+    }
+
+    @Override
+    public void accept(RentalEvent event) {
+        pending.add(event);
+        if (scheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(timer::restart);
+        }
+    }
+
+    private void flush() {
+        scheduled.set(false);
+        Set<Car> cars = new LinkedHashSet<>(); // Car has identity equality
+        List<User> registered = new ArrayList<>();
+        boolean reload = false;
+        RentalEvent e;
+        while ((e = pending.poll()) != null) {
+            if (e.kind == RentalEvent.Kind.BULK_IMPORTED || e.kind == RentalEvent.Kind.PRICES_UPDATED) {
+                reload = true;
+            } else if (e.car != null) {
+                cars.add(e.car);
+            } else if (e.user != null) {
+                registered.add(e.user);
+            }
+        }
+        if (!cars.isEmpty() || !registered.isEmpty() || reload) {
+            onEdt.accept(new Batch(cars, registered, reload));
+        }
+    }
+}
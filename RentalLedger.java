@@ -0,0 +1,364 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// ===========================
+// RENTAL LEDGER
+// ===========================
+// Append-only history of completed rentals: car, brand, renter, start, end,
+// price per day and the amount charged. Rows are stored column-wise in
+// fixed-size chunks of primitive arrays (strings are dictionary codes), so
+// tens of millions of rows cost ~40 bytes each and growing never copies
+// old rows.
+//
+// Per-car, per-brand, per-customer and per-day totals are updated as each row
+// is appended; reports read those totals and never rescan the rows. Days are
+// local calendar days in the system zone, the same days reservations and the
+// reports dialog use.
+//
+// On disk: ledger.bin next to the journal, framed like journal records
+// ([length][crc32][payload]). Rows are buffered and forced at checkpoints.
+// Every RETURNED journal record carries its row number, so rows lost with an
+// unflushed buffer are re-appended by journal replay.
+class RentalLedger implements Closeable {
+    static final long DAY_MS = 86_400_000L;
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK = 1 << CHUNK_BITS;
+
+    // ---- columns ----
+    private int[][] carCol = new int[0][];
+    private int[][] brandCol = new int[0][];
+    private int[][] renterCol = new int[0][];
+    private long[][] startCol = new long[0][];
+    private long[][] endCol = new long[0][];
+    private double[][] priceCol = new double[0][];
+    private double[][] amountCol = new double[0][];
+    private long size;
+
+    private final Dictionary cars = new Dictionary();
+    private final Dictionary brands = new Dictionary();
+    private final Dictionary renters = new Dictionary();
+
+    // ---- aggregates (indexed by dictionary code, or by epoch day) ----
+    private final Totals byCar = new Totals();
+    private final Totals byBrand = new Totals();
+    private final Totals byRenter = new Totals();
+    private final Totals byDay = new Totals(); // revenue and rentals by return day, rented time by calendar day
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private DataOutputStream out;
+    private FileChannel channel;
+
+    // One completed rental, as read back from the columns
+    static final class Row {
+        final String carId, brand, renterId;
+        final long start, end;
+        final double pricePerDay, amount;
+
+        Row(String carId, String brand, String renterId, long start, long end, double pricePerDay, double amount) {
+            this.carId = carId;
+            this.brand = brand;
+            this.renterId = renterId;
+            this.start = start;
+            this.end = end;
+            this.pricePerDay = pricePerDay;
+            this.amount = amount;
+        }
+    }
+
+    // One line of a report
+    static final class Total {
+        final String key;
+        final long rentals;
+        final double revenue;
+        final long rentedMillis;
+
+        Total(String key, long rentals, double revenue, long rentedMillis) {
+            this.key = key;
+            this.rentals = rentals;
+            this.revenue = revenue;
+            this.rentedMillis = rentedMillis;
+        }
+
+        double rentedDays() { return rentedMillis / (double) DAY_MS; }
+    }
+
+    // All reports taken under one lock, so they agree with each other
+    static final class Report {
+        final List<Total> byCar, byBrand, byCustomer, byDay;
+        final List<Row> recent;
+        final long rows;
+        final double revenue;
+
+        Report(List<Total> byCar, List<Total> byBrand, List<Total> byCustomer, List<Total> byDay, List<Row> recent,
+               long rows, double revenue) {
+            this.recent = recent;
+            this.byCar = byCar;
+            this.byBrand = byBrand;
+            this.byCustomer = byCustomer;
+            this.byDay = byDay;
+            this.rows = rows;
+            this.revenue = revenue;
+        }
+    }
+
+    // Loads the rows already on disk and keeps the file open for appending
+    synchronized void open(Path file) throws IOException {
+        if (Files.exists(file)) {
+            long good = 0;
+            byte[] data = Files.readAllBytes(file);
+            ByteBuffer in = ByteBuffer.wrap(data);
+            while (in.remaining() >= 8) {
+                int len = in.getInt();
+                int crc = in.getInt();
+                if (len < 0 || len > in.remaining()) break;
+                CRC32 check = new CRC32();
+                check.update(data, in.position(), len);
+                if ((int) check.getValue() != crc) break;
+                DataInputStream row = new DataInputStream(new ByteArrayInputStream(data, in.position(), len));
+                add(row.readUTF(), row.readUTF(), row.readUTF(), row.readLong(), row.readLong(), row.readDouble());
+                in.position(in.position() + len);
+                good = in.position();
+            }
+            if (good < data.length) {
+                System.err.println("Ledger: dropping " + (data.length - good) + " byte(s) of torn tail");
+                try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    ch.truncate(good);
+                }
+            }
+        }
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+    }
+
+    // Records a completed rental and returns its row number
+    synchronized long append(String carId, String brand, String renterId, long start, long end, double pricePerDay) {
+        long row = add(carId, brand, renterId, start, end, pricePerDay);
+        if (out != null) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+                DataOutputStream payload = new DataOutputStream(bytes);
+                payload.writeUTF(carId);
+                payload.writeUTF(brand);
+                payload.writeUTF(renterId);
+                payload.writeLong(start);
+                payload.writeLong(end);
+                payload.writeDouble(pricePerDay);
+                byte[] b = bytes.toByteArray();
+                CRC32 crc = new CRC32();
+                crc.update(b);
+                out.writeInt(b.length);
+                out.writeInt((int) crc.getValue());
+                out.write(b);
+            } catch (IOException e) {
+                System.err.println("Ledger write failed: " + e.getMessage());
+            }
+        }
+        return row;
+    }
+
+    // Journal replay: re-appends a row only if the ledger file didn't have it
+    synchronized void restore(long row, String carId, String brand, String renterId, long start, long end,
+                              double pricePerDay) {
+        if (row < size) return;
+        if (row > size) System.err.println("Ledger: rows " + size + ".." + (row - 1) + " are missing");
+        append(carId, brand, renterId, start, end, pricePerDay);
+    }
+
+    synchronized long size() { return size; }
+
+    // What a rental costs: whole days, at least one
+    static double charge(long start, long end, double pricePerDay) {
+        long days = Math.max(1, (end - start + DAY_MS - 1) / DAY_MS);
+        return days * pricePerDay;
+    }
+
+    // Pushes buffered rows to disk; called by the checkpoint before old journal segments go
+    synchronized void sync() throws IOException {
+        if (out == null) return;
+        out.flush();
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            sync();
+            if (channel != null) channel.close();
+        } catch (IOException e) {
+            System.err.println("Ledger close failed: " + e.getMessage());
+        }
+        out = null;
+    }
+
+    // ---- reports (precomputed; cost is the number of keys, not rows) ----
+
+    synchronized List<Total> totalsByCar() { return byCar.report(cars); }
+
+    synchronized List<Total> totalsByBrand() { return byBrand.report(brands); }
+
+    synchronized List<Total> totalsByCustomer() { return byRenter.report(renters); }
+
+    // Keyed by ISO date; rentedMillis is rented car time falling on that day
+    synchronized List<Total> totalsByDay() {
+        List<Total> out = new ArrayList<>();
+        for (int d = 0; d < byDay.length(); d++) {
+            if (byDay.rentals[d] != 0 || byDay.millis[d] != 0) {
+                out.add(new Total(LocalDate.ofEpochDay(d).toString(), byDay.rentals[d],
+                        byDay.revenue[d], byDay.millis[d]));
+            }
+        }
+        return out;
+    }
+
+    synchronized double totalRevenue() { return byBrand.sumRevenue(); }
+
+    synchronized Report report(int recentRows) {
+        return new Report(totalsByCar(), totalsByBrand(), totalsByCustomer(), totalsByDay(), recent(recentRows),
+                size, totalRevenue());
+    }
+
+    // The latest n rentals, newest first
+    synchronized List<Row> recent(int n) {
+        List<Row> out = new ArrayList<>();
+        for (long row = size - 1; row >= 0 && out.size() < n; row--) {
+            int chunk = (int) (row >>> CHUNK_BITS), at = (int) (row & (CHUNK - 1));
+            out.add(new Row(cars.value(carCol[chunk][at]), brands.value(brandCol[chunk][at]),
+                    renters.value(renterCol[chunk][at]), startCol[chunk][at], endCol[chunk][at],
+                    priceCol[chunk][at], amountCol[chunk][at]));
+        }
+        return out;
+    }
+
+    // ---- internals ----
+
+    private long add(String carId, String brand, String renterId, long start, long end, double pricePerDay) {
+        if (start <= 0 || start > end) start = end; // start unknown (rented before history was kept)
+        long row = size;
+        int chunk = (int) (row >>> CHUNK_BITS), at = (int) (row & (CHUNK - 1));
+        if (chunk == carCol.length) grow();
+        int car = cars.code(carId), brandCode = brands.code(brand), renter = renters.code(renterId);
+        double amount = charge(start, end, pricePerDay);
+        carCol[chunk][at] = car;
+        brandCol[chunk][at] = brandCode;
+        renterCol[chunk][at] = renter;
+        startCol[chunk][at] = start;
+        endCol[chunk][at] = end;
+        priceCol[chunk][at] = pricePerDay;
+        amountCol[chunk][at] = amount;
+        size = row + 1;
+
+        long millis = end - start;
+        byCar.add(car, amount, millis);
+        byBrand.add(brandCode, amount, millis);
+        byRenter.add(renter, amount, millis);
+        byDay.add((int) dayOf(end), amount, 0);
+        // Spread rented time over the calendar days it covers
+        long from = start;
+        for (long day = dayOf(start); from < end; day++) {
+            long to = Math.min(end, startOf(day + 1));
+            byDay.addMillis((int) day, to - from);
+            from = to;
+        }
+        return row;
+    }
+
+    private long dayOf(long millis) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(millis), zone).toEpochDay();
+    }
+
+    // First instant of a local day; days around a DST change are 23 or 25 hours
+    private long startOf(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private void grow() {
+        int n = carCol.length + 1;
+        carCol = Arrays.copyOf(carCol, n);
+        brandCol = Arrays.copyOf(brandCol, n);
+        renterCol = Arrays.copyOf(renterCol, n);
+        startCol = Arrays.copyOf(startCol, n);
+        endCol = Arrays.copyOf(endCol, n);
+        priceCol = Arrays.copyOf(priceCol, n);
+        amountCol = Arrays.copyOf(amountCol, n);
+        carCol[n - 1] = new int[CHUNK];
+        brandCol[n - 1] = new int[CHUNK];
+        renterCol[n - 1] = new int[CHUNK];
+        startCol[n - 1] = new long[CHUNK];
+        endCol[n - 1] = new long[CHUNK];
+        priceCol[n - 1] = new double[CHUNK];
+        amountCol[n - 1] = new double[CHUNK];
+    }
+
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int code(String s) {
+            Integer c = codes.get(s);
+            if (c == null) {
+                c = values.size();
+                codes.put(s, c);
+                values.add(s);
+            }
+            return c;
+        }
+
+        String value(int code) { return values.get(code); }
+    }
+
+    // Running totals in parallel primitive arrays, grown on demand
+    private static final class Totals {
+        long[] rentals = new long[16];
+        double[] revenue = new double[16];
+        long[] millis = new long[16];
+
+        void add(int key, double amount, long rentedMillis) {
+            ensure(key);
+            rentals[key]++;
+            revenue[key] += amount;
+            millis[key] += rentedMillis;
+        }
+
+        void addMillis(int key, long rentedMillis) {
+            ensure(key);
+            millis[key] += rentedMillis;
+        }
+
+        int length() { return rentals.length; }
+
+        double sumRevenue() {
+            double sum = 0;
+            for (double r : revenue) sum += r;
+            return sum;
+        }
+
+        List<Total> report(Dictionary keys) {
+            List<Total> out = new ArrayList<>();
+            for (int k = 0; k < keys.values.size(); k++) {
+                out.add(new Total(keys.value(k), rentals[k], revenue[k], millis[k]));
+            }
+            return out;
+        }
+
+        private void ensure(int key) {
+            if (key < rentals.length) return;
+            int n = Math.max(key + 1, rentals.length * 2);
+            rentals = Arrays.copyOf(rentals, n);
+            revenue = Arrays.copyOf(revenue, n);
+            millis = Arrays.copyOf(millis, n);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// A booking of one car for whole days: [fromDay, toDay), in epoch days
+class Reservation {
+    final String id;
+    final String carId;
+    final String renterId;
+    final long fromDay;
+    final long toDay;
+
+    Reservation(String id, String carId, String renterId, long fromDay, long toDay) {
+        this.id = id;
+        this.carId = carId;
+        this.renterId = renterId;
+        this.fromDay = fromDay;
+        this.toDay = toDay;
+    }
+
+    boolean overlaps(long from, long to) { return fromDay < to && from < toDay; }
+
+    boolean covers(long day) { return fromDay <= day && day < toDay; }
+
+    LocalDate from() { return LocalDate.ofEpochDay(fromDay); }
+
+    LocalDate to() { return LocalDate.ofEpochDay(toDay); }
+}
+
+// ===========================
+// RESERVATION BOOK
+// ===========================
+// Two indexes over the same reservations:
+//   - per car: a TreeMap from start day to reservation. A car's reservations
+//     never overlap, so the one starting last before a range's end is the
+//     only one that can collide with it (one floorEntry per check). Booking
+//     checks and inserts under that map's lock, so two overlapping requests
+//     for one car get exactly one success.
+//   - per day: a bitset of fleet slots booked that day, in the same chunk
+//     layout as FleetStore's availability bits. "Which cars are free from
+//     Friday to Monday" ORs a few day bitsets together and walks the clear
+//     bits, so it costs (days x fleet/64) word operations, not a scan of
+//     every car's reservations.
+class ReservationBook {
+    static final int MAX_DAYS = 366; // longest bookable range; also bounds a query
+    private static final int CHUNK_BITS = 4096;
+
+    private final ConcurrentHashMap<String, TreeMap<Long, Reservation>> byCar = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Reservation> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<Reservation>> byRenter = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, DayBits> days = new ConcurrentHashMap<>();
+
+    // Books the range unless it overlaps another reservation of the car, or
+    // it covers today and someone else has the car out right now.
+    // Pass today = Long.MIN_VALUE when replaying history.
+    boolean add(Car car, Reservation r, long today) {
+        if (byId.containsKey(r.id)) return true; // replayed twice
+        TreeMap<Long, Reservation> booked = byCar.computeIfAbsent(r.carId, k -> new TreeMap<>());
+        synchronized (booked) {
+            if (overlapping(booked, r.fromDay, r.toDay) != null) return false;
+            if (r.covers(today)) {
+                String renter = car.getCurrentRenterId();
+                if (renter != null && !renter.equals(r.renterId)) return false;
+            }
+            booked.put(r.fromDay, r);
+            mark(car.slot, r, true);
+        }
+        byId.put(r.id, r);
+        byRenter.computeIfAbsent(r.renterId, k -> ConcurrentHashMap.newKeySet()).add(r);
+        return true;
+    }
+
+    Reservation cancel(String reservationId, Car car) {
+        Reservation r = byId.remove(reservationId);
+        if (r == null) return null;
+        TreeMap<Long, Reservation> booked = byCar.get(r.carId);
+        synchronized (booked) {
+            booked.remove(r.fromDay);
+            if (car != null) mark(car.slot, r, false);
+        }
+        byRenter.computeIfPresent(r.renterId, (k, set) -> {
+            set.remove(r);
+            return set.isEmpty() ? null : set;
+        });
+        return r;
+    }
+
+    Reservation find(String reservationId) {
+        return byId.get(reservationId);
+    }
+
+    boolean isFree(String carId, long from, long to) {
+        TreeMap<Long, Reservation> booked = byCar.get(carId);
+        if (booked == null) return true;
+        synchronized (booked) {
+            return overlapping(booked, from, to) == null;
+        }
+    }
+
+    // The reservation holding the car on that day, if any
+    Reservation holder(String carId, long day) {
+        TreeMap<Long, Reservation> booked = byCar.get(carId);
+        if (booked == null) return null;
+        synchronized (booked) {
+            return overlapping(booked, day, day + 1);
+        }
+    }
+
+    List<Reservation> reservationsOf(String renterId) {
+        Set<Reservation> mine = byRenter.get(renterId);
+        return mine == null ? Collections.emptyList() : new ArrayList<>(mine);
+    }
+
+    List<Reservation> all() {
+        return new ArrayList<>(byId.values());
+    }
+
+    // Fleet slots with at least one booked day in [from, to), as a bitset
+    long[] bookedSlots(long from, long to, int slotCount) {
+        long[] out = new long[(slotCount + 63) >>> 6];
+        for (long d = from; d < to; d++) {
+            DayBits day = days.get(d);
+            if (day == null) continue;
+            AtomicLongArray[] chunks = day.chunks;
+            for (int c = 0; c < chunks.length; c++) {
+                AtomicLongArray chunk = chunks[c];
+                if (chunk == null) continue;
+                int base = c * (CHUNK_BITS / 64);
+                int words = Math.min(chunk.length(), out.length - base);
+                for (int w = 0; w < words; w++) out[base + w] |= chunk.get(w);
+            }
+        }
+        return out;
+    }
+
+    // Drops finished days from the day index; their reservations stay
+    void pruneBefore(long day) {
+        days.keySet().removeIf(d -> d < day);
+    }
+
+    private static Reservation overlapping(TreeMap<Long, Reservation> booked, long from, long to) {
+        Map.Entry<Long, Reservation> last = booked.floorEntry(to - 1);
+        return last != null && last.getValue().toDay > from ? last.getValue() : null;
+    }
+
+    private void mark(int slot, Reservation r, boolean on) {
+        for (long d = r.fromDay; d < r.toDay; d++) {
+            DayBits day = on ? days.computeIfAbsent(d, k -> new DayBits()) : days.get(d);
+            if (day != null) day.set(slot, on);
+        }
+    }
+
+    private static final class DayBits {
+        volatile AtomicLongArray[] chunks = new AtomicLongArray[0];
+
+        void set(int slot, boolean on) {
+            AtomicLongArray chunk = chunk(slot / CHUNK_BITS, on);
+            if (chunk == null) return;
+            int word = (slot % CHUNK_BITS) >>> 6;
+            long mask = 1L << (slot & 63);
+            long prev;
+            do {
+                prev = chunk.get(word);
+            } while (!chunk.compareAndSet(word, prev, on ? prev | mask : prev & ~mask));
+        }
+
+        private AtomicLongArray chunk(int c, boolean create) {
+            AtomicLongArray[] current = chunks;
+            if (c < current.length && current[c] != null) return current[c];
+            if (!create) return null;
+            synchronized (this) {
+                current = chunks;
+                if (c >= current.length) current = Arrays.copyOf(current, c + 1);
+                if (current[c] == null) current[c] = new AtomicLongArray(CHUNK_BITS / 64);
+                chunks = current;
+                return current[c];
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// ===========================
+// SESSIONS
+// ===========================
+// Any number of people logged in at once, each holding an opaque token (32
+// random bytes, base64url). Checking a token is one ConcurrentHashMap read
+// and a clock comparison: no lock and no password hash. The slow hash runs
+// only in RentalService.login.
+//
+// A session ends after -Drental.sessions.idleMinutes (default 30) without
+// use. An expired token is refused at once; a background sweep every
+// idle/4 drops the ones nobody asks about again. lastSeen is written at most
+// once a second per session, so a busy token doesn't keep a cache line
+// bouncing between cores.
+class SessionManager {
+    private static final long TOUCH_MS = 1_000;
+    private static final int TOKEN_BYTES = 32;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    static final class Session {
+        final String token;
+        final User user;
+        final long created;
+        volatile long lastSeen;
+
+        Session(String token, User user, long now) {
+            this.token = token;
+            this.user = user;
+            this.created = now;
+            this.lastSeen = now;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Session> byToken = new ConcurrentHashMap<>();
+    private final long idleMillis;
+
+    SessionManager(long idleMillis) {
+        this.idleMillis = idleMillis;
+    }
+
+    static SessionManager fromSystemProperties() {
+        long idle = TimeUnit.MINUTES.toMillis(Long.getLong("rental.sessions.idleMinutes", 30));
+        SessionManager sessions = new SessionManager(idle);
+        sessions.startSweeper();
+        return sessions;
+    }
+
+    Session open(User user) {
+        byte[] raw = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(raw);
+        Session s = new Session(Base64.getUrlEncoder().withoutPadding().encodeToString(raw), user,
+                System.currentTimeMillis());
+        byToken.put(s.token, s);
+        return s;
+    }
+
+    // The live session for the token (and marks it used), or null
+    Session validate(String token) {
+        if (token == null) return null;
+        Session s = byToken.get(token);
+        if (s == null) return null;
+        long now = System.currentTimeMillis();
+        long seen = s.lastSeen;
+        if (now - seen > idleMillis) {
+            byToken.remove(token, s);
+            return null;
+        }
+        if (now - seen > TOUCH_MS) s.lastSeen = now;
+        return s;
+    }
+
+    User user(String token) {
+        Session s = validate(token);
+        return s == null ? null : s.user;
+    }
+
+    boolean close(String token) {
+        return token != null && byToken.remove(token) != null;
+    }
+
+    int size() { return byToken.size(); }
+
+    // Drops every idle session; returns how many
+    int evictExpired() {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        int evicted = 0;
+        for (Session s : byToken.values()) {
+            if (s.lastSeen < cutoff && byToken.remove(s.token, s)) evicted++;
+        }
+        return evicted;
+    }
+
+    private void startSweeper() {
+        long every = Math.max(1_000, idleMillis / 4);
+        ScheduledExecutorService sweep = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-sweep");
+            t.setDaemon(true);
+            return t;
+        });
+        sweep.scheduleAtFixedRate(this::evictExpired, every, every, TimeUnit.MILLISECONDS);
+    }
+}
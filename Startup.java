@@ -0,0 +1,158 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+// ===========================
+// STARTUP
+// ===========================
+// Loading runs in stages on one background thread, so the window can show
+// at once and report progress while data arrives:
+//   USERS     customers from the snapshot or customers.txt, plus journaled ones;
+//             login is accepted from here on
+//   FLEET     cars, reservations, rental history and the rest of the journal;
+//             the journal is open for writes from here on
+//   SERVICES  checkpoints, id migrations, metrics, default data
+// Each stage is timed (gauges "startup.<stage>Ms"). If USERS or FLEET throws,
+// loading stops there: the journal never opens for writes, so the service
+// stays read-only on what was loaded, and SERVICES (checkpoints, default
+// data) doesn't run. A checkpoint of partial state would otherwise replace
+// the snapshot and delete the journal it was missing. A SERVICES failure is
+// logged and recorded. Either way every wait returns and READY is reached.
+class Startup {
+
+    enum Phase {
+        USERS("Loading customers"),
+        FLEET("Loading fleet"),
+        SERVICES("Starting services"),
+        READY("Ready");
+
+        final String label;
+
+        Phase(String label) { this.label = label; }
+    }
+
+    interface Step {
+        void run() throws Exception;
+    }
+
+    private final Step users, fleet, services;
+    private final CountDownLatch usersReady = new CountDownLatch(1);
+    private final CountDownLatch fleetReady = new CountDownLatch(1);
+    private final CountDownLatch ready = new CountDownLatch(1);
+    private final long[] millis = new long[Phase.values().length]; // READY holds the total
+    private final List<String> failures = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Phase>> listeners = new CopyOnWriteArrayList<>();
+    private volatile Phase phase; // null until started
+    private volatile boolean aborted; // USERS or FLEET failed
+    private Thread thread;
+
+    Startup(Step users, Step fleet, Step services) {
+        this.users = users;
+        this.fleet = fleet;
+        this.services = services;
+        for (Phase p : Phase.values()) {
+            String name = p == Phase.READY ? "total" : p.name().toLowerCase(Locale.ROOT);
+            Metrics.gauge("startup." + name + "Ms", () -> millis[p.ordinal()]);
+        }
+    }
+
+    // Begins loading; later calls do nothing
+    synchronized void start() {
+        if (thread != null) return;
+        thread = new Thread(this::run, "startup");
+        thread.start();
+    }
+
+    // The listener hears the current phase at once, then every change (on the startup thread)
+    void listen(Consumer<Phase> listener) {
+        listeners.add(listener);
+        Phase now = phase;
+        if (now != null) listener.accept(now);
+    }
+
+    Phase phase() { return phase; }
+
+    List<String> failures() { return new ArrayList<>(failures); }
+
+    // Loading stopped early; the data is incomplete and writes are refused
+    boolean aborted() { return aborted; }
+
+    // Each wait starts loading if nobody has yet
+    void awaitUsers() { await(usersReady); }
+
+    void awaitFleet() { await(fleetReady); }
+
+    void awaitReady() { await(ready); }
+
+    boolean isReady() { return ready.getCount() == 0; }
+
+    // "startup users=12ms fleet=340ms services=5ms total=357ms"
+    String summary() {
+        StringBuilder sb = new StringBuilder("startup");
+        for (Phase p : Phase.values()) {
+            String name = p == Phase.READY ? "total" : p.name().toLowerCase(Locale.ROOT);
+            sb.append(' ').append(name).append('=').append(millis[p.ordinal()]).append("ms");
+        }
+        if (!failures.isEmpty()) sb.append(" failed: ").append(String.join("; ", failures));
+        if (aborted) sb.append(" (read-only until restarted)");
+        return sb.toString();
+    }
+
+    private void run() {
+        long begin = System.nanoTime();
+        try {
+            aborted = !stage(Phase.USERS, users);
+            usersReady.countDown();
+            if (!aborted) aborted = !stage(Phase.FLEET, fleet);
+            fleetReady.countDown();
+            if (!aborted) stage(Phase.SERVICES, services);
+        } finally {
+            // Nobody waits forever, whatever happened above
+            usersReady.countDown();
+            fleetReady.countDown();
+            millis[Phase.READY.ordinal()] = (System.nanoTime() - begin) / 1_000_000;
+            enter(Phase.READY);
+            ready.countDown();
+            System.out.println(summary());
+        }
+    }
+
+    // False if the step threw
+    private boolean stage(Phase p, Step step) {
+        enter(p);
+        long start = System.nanoTime();
+        try {
+            step.run();
+            return true;
+        } catch (Exception e) {
+            failures.add(p.label + ": " + e);
+            System.err.println("Startup: " + p.label.toLowerCase(Locale.ROOT) + " failed: " + e);
+            return false;
+        } finally {
+            millis[p.ordinal()] = (System.nanoTime() - start) / 1_000_000;
+        }
+    }
+
+    private void enter(Phase p) {
+        phase = p;
+        for (Consumer<Phase> l : listeners) l.accept(p);
+    }
+
+    private void await(CountDownLatch latch) {
+        start();
+        if (Thread.currentThread() == thread) return; // a later stage calling the service it is loading
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
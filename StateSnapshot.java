@@ -0,0 +1,230 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// ===========================
+// BINARY STATE SNAPSHOT
+// ===========================
+// Layout (all big-endian, strings are varint length + UTF-8 bytes):
+//   int    magic "CRSS"
+//   short  format version
+//   varint dictionary size, then the strings (every brand, model and branch once)
+//   varint customer count, then id, name, password, contact, email
+//   varint car count, then id, brand code, model code, branch code (format 4
+//          on; older cars belong to the first branch), double list price,
+//          long booking version, renter id (length + 1; 0 means none),
+//          then if rented, long rental start millis (format 3 on) and
+//          double locked-in rate (format 5 on; NaN if unknown)
+//   varint reservation count, then id, car id, renter id, long from day,
+//          long to day (format 2 on; format 1 files have no reservations)
+//   int    crc32 of everything before it
+// Writing goes to a temp file that is swapped in atomically. Reading pulls
+// the whole file in with one bulk channel read and decodes from the array.
+class StateSnapshot {
+    static final int MAGIC = 0x43525353;
+    static final short FORMAT = 5;
+
+    static final class Contents {
+        final List<Customer> customers;
+        final List<Car> cars;
+        final List<String> carBranches; // branch name of cars.get(i); "" for the first branch
+        final List<Reservation> reservations;
+
+        Contents(List<Customer> customers, List<Car> cars, List<String> carBranches, List<Reservation> reservations) {
+            this.customers = customers;
+            this.cars = cars;
+            this.carBranches = carBranches;
+            this.reservations = reservations;
+        }
+    }
+
+    // Safe to call while the service is running: it works from a copy of the
+    // current user and car references, and each car's booking is read once.
+    static void write(Path file, Iterable<User> users, Iterable<Car> fleet,
+                      Iterable<Reservation> reservations) throws IOException {
+        List<Customer> customers = new ArrayList<>();
+        for (User u : users) {
+            if (u instanceof Customer) customers.add((Customer) u);
+        }
+        List<Car> cars = new ArrayList<>();
+        for (Car c : fleet) cars.add(c);
+
+        Map<String, Integer> codes = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        for (Car c : cars) {
+            for (String s : new String[]{c.getBrand(), c.getModel(), branchOf(c)}) {
+                if (codes.putIfAbsent(s, dictionary.size()) == null) dictionary.add(s);
+            }
+        }
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (OutputStream raw = Files.newOutputStream(tmp)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new CheckedOutputStream(raw, crc), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT);
+
+            writeVarint(out, dictionary.size());
+            for (String s : dictionary) writeString(out, s);
+
+            writeVarint(out, customers.size());
+            for (Customer c : customers) {
+                writeString(out, c.getId());
+                writeString(out, c.getName());
+                writeString(out, c.password);
+                writeString(out, c.getContact());
+                writeString(out, c.getEmail());
+            }
+
+            writeVarint(out, cars.size());
+            for (Car c : cars) {
+                Car.Booking b = c.booking();
+                writeString(out, c.getCarId());
+                writeVarint(out, codes.get(c.getBrand()));
+                writeVarint(out, codes.get(c.getModel()));
+                writeVarint(out, codes.get(branchOf(c)));
+                out.writeDouble(c.getListPrice());
+                out.writeLong(b.version);
+                if (b.renterId == null) {
+                    writeVarint(out, 0);
+                } else {
+                    byte[] bytes = b.renterId.getBytes(StandardCharsets.UTF_8);
+                    writeVarint(out, bytes.length + 1);
+                    out.write(bytes);
+                    out.writeLong(b.since);
+                    out.writeDouble(b.rate);
+                }
+            }
+
+            List<Reservation> booked = new ArrayList<>();
+            for (Reservation r : reservations) booked.add(r);
+            writeVarint(out, booked.size());
+            for (Reservation r : booked) {
+                writeString(out, r.id);
+                writeString(out, r.carId);
+                writeString(out, r.renterId);
+                out.writeLong(r.fromDay);
+                out.writeLong(r.toDay);
+            }
+            out.flush();
+            new DataOutputStream(raw).writeInt((int) crc.getValue());
+        }
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static Contents read(Path file) throws IOException {
+        byte[] data;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < 10 || size > Integer.MAX_VALUE - 8) throw new IOException("Bad snapshot size: " + size);
+            ByteBuffer buf = ByteBuffer.allocate((int) size);
+            while (buf.hasRemaining()) {
+                if (ch.read(buf) < 0) throw new EOFException("Snapshot truncated");
+            }
+            data = buf.array();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 4);
+        ByteBuffer in = ByteBuffer.wrap(data);
+        if (in.getInt(data.length - 4) != (int) crc.getValue()) throw new IOException("Snapshot checksum mismatch");
+        if (in.getInt() != MAGIC) throw new IOException("Not a snapshot file");
+        short format = in.getShort();
+        if (format < 1 || format > FORMAT) throw new IOException("Unsupported snapshot version " + format);
+
+        try {
+            String[] dictionary = new String[readVarint(in)];
+            for (int i = 0; i < dictionary.length; i++) dictionary[i] = readString(in, data);
+
+            int customerCount = readVarint(in);
+            List<Customer> customers = new ArrayList<>(customerCount);
+            for (int i = 0; i < customerCount; i++) {
+                customers.add(new Customer(readString(in, data), readString(in, data), readString(in, data),
+                        readString(in, data), readString(in, data)));
+            }
+
+            int carCount = readVarint(in);
+            List<Car> cars = new ArrayList<>(carCount);
+            List<String> branches = new ArrayList<>(carCount);
+            for (int i = 0; i < carCount; i++) {
+                String id = readString(in, data);
+                String brand = dictionary[readVarint(in)];
+                String model = dictionary[readVarint(in)];
+                branches.add(format >= 4 ? dictionary[readVarint(in)] : "");
+                Car car = Car.create(id, brand, model, in.getDouble());
+                long version = in.getLong();
+                int renterLen = readVarint(in);
+                String renter = null;
+                long since = 0;
+                double rate = Double.NaN;
+                if (renterLen > 0) {
+                    renter = new String(data, in.position(), renterLen - 1, StandardCharsets.UTF_8);
+                    in.position(in.position() + renterLen - 1);
+                    if (format >= 3) since = in.getLong();
+                    if (format >= 5) rate = in.getDouble();
+                }
+                car.restore(renter, version, since, rate);
+                cars.add(car);
+            }
+
+            List<Reservation> reservations = new ArrayList<>();
+            if (format >= 2) {
+                int count = readVarint(in);
+                for (int i = 0; i < count; i++) {
+                    reservations.add(new Reservation(readString(in, data), readString(in, data),
+                            readString(in, data), in.getLong(), in.getLong()));
+                }
+            }
+            return new Contents(customers, cars, branches, reservations);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt snapshot: " + e, e);
+        }
+    }
+
+    private static String branchOf(Car c) {
+        return c.branch == null ? "" : c.branch.name;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in, byte[] data) {
+        int len = readVarint(in);
+        String s = new String(data, in.position(), len, StandardCharsets.UTF_8);
+        in.position(in.position() + len);
+        return s;
+    }
+
+    private static void writeVarint(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            v |= (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+        throw new IllegalStateException("Varint too long");
+    }
+}
@@ -0,0 +1,50 @@
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+// ===========================
+// USER DIRECTORY (indexed)
+// ===========================
+// Usernames are matched case-insensitively at login, so the name index is
+// keyed by the case-folded name. A second index resolves renter ids.
+class UserDirectory implements Iterable<User> {
+    private final ConcurrentHashMap<String, User> byName = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, User> byId = new ConcurrentHashMap<>();
+
+    // Returns false (and changes nothing) if the username is already taken
+    public boolean add(User user) {
+        if (byName.putIfAbsent(fold(user.getName()), user) != null) {
+            return false;
+        }
+        if (byId.putIfAbsent(user.getId(), user) != null) {
+            System.err.println("Duplicate user id " + user.getId() + " for " + user.getName());
+        }
+        return true;
+    }
+
+    // Moves an added user to a new, unused id
+    public void changeId(User user, String newId) {
+        byId.remove(user.getId(), user);
+        user.id = newId;
+        byId.put(newId, user);
+    }
+
+    public User findByName(String name) {
+        return byName.get(fold(name));
+    }
+
+    public User findById(String id) {
+        return byId.get(id);
+    }
+
+    public int size() { return byName.size(); }
+
+    @Override
+    public Iterator<User> iterator() {
+        return byName.values().iterator();
+    }
+
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
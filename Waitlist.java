@@ -0,0 +1,403 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+// ===========================
+// WAITLIST
+// ===========================
+// Customers queue for one car or for any car of a brand/model. When a car
+// comes free (returned, added), it is offered to the waiter who joined
+// first among those queued for that car and for its model, and held for
+// them for -Drental.waitlist.claimSeconds (default 600). If they rent it in
+// time the offer is claimed; if they decline or the time runs out, the car
+// goes to the next waiter. A customer holds at most one open offer, so
+// someone queued for every Tesla can't take all the returns at once; while
+// their offer is open they are skipped without losing their place.
+//
+// Nothing here takes a global lock:
+//   - each queue is a ConcurrentSkipListSet ordered by join sequence, and a
+//     dispatcher takes a waiter by removing it (only one remove succeeds)
+//   - a car is claimed for dispatch by putIfAbsent in offersByCar, so only
+//     one thread dispatches a given car and returns of different cars
+//     dispatch in parallel
+//   - one open offer per customer is a putIfAbsent in offersByUser
+// Joins and queue cleanup use ConcurrentHashMap.compute, which locks only
+// that queue's bin.
+//
+// Waitlists live in memory only; after a restart customers join again.
+class Waitlist {
+    static final long CLAIM_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("rental.waitlist.claimSeconds", 600));
+
+    static final class Waiter {
+        final long seq;       // join order; lower goes first
+        final String userId;
+        final String carId;   // null when waiting for a model
+        final String brand, model;
+        final long joinedAt;
+        final String key;
+
+        Waiter(long seq, String userId, String carId, String brand, String model, long joinedAt) {
+            this.seq = seq;
+            this.userId = userId;
+            this.carId = carId;
+            this.brand = brand;
+            this.model = model;
+            this.joinedAt = joinedAt;
+            this.key = carId != null ? carKey(carId) : modelKey(brand, model);
+        }
+
+        String describe() {
+            return carId != null ? "car " + carId : brand + " " + model;
+        }
+    }
+
+    static final class Offer {
+        final Waiter waiter;
+        final Car car;
+        final long expiresAt;
+        volatile ScheduledFuture<?> expiry;
+
+        Offer(Waiter waiter, Car car, long expiresAt) {
+            this.waiter = waiter;
+            this.car = car;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    enum Change { OFFERED, CLAIMED, DECLINED, EXPIRED, WITHDRAWN }
+
+    interface Listener {
+        void offerChanged(Offer offer, Change change);
+    }
+
+    private static final Offer DISPATCHING = new Offer(null, null, 0); // car claimed, waiter not chosen yet
+    private static final Comparator<Waiter> JOIN_ORDER = Comparator.comparingLong(w -> w.seq);
+
+    private final ConcurrentHashMap<String, ConcurrentSkipListSet<Waiter>> queues = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<Waiter>> byUser = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Offer> offersByCar = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Offer> offersByUser = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong seq = new AtomicLong();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Predicate<Car> offerable; // free, still in the fleet, not reserved today
+    private final ScheduledThreadPoolExecutor timer;
+
+    Waitlist(Predicate<Car> offerable) {
+        this.offerable = offerable;
+        timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "waitlist-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    void listen(Listener listener) { listeners.add(listener); }
+
+    // ---- customers ----
+
+    Waiter joinCar(String userId, String carId) {
+        return join(userId, carId, null, null);
+    }
+
+    Waiter joinModel(String userId, String brand, String model) {
+        return join(userId, null, brand.trim(), model.trim());
+    }
+
+    // The duplicate check and the enqueue happen in one compute on the line's
+    // key, so two joins by the same customer for the same line add one entry
+    private Waiter join(String userId, String carId, String brand, String model) {
+        Waiter w = new Waiter(seq.incrementAndGet(), userId, carId, brand, model, System.currentTimeMillis());
+        Waiter[] result = {w};
+        queues.compute(w.key, (k, q) -> {
+            for (Waiter mine : byUser.getOrDefault(userId, Collections.emptySet())) {
+                if (mine.key.equals(k)) {
+                    result[0] = mine; // already in that line
+                    return q;
+                }
+            }
+            if (q == null) q = new ConcurrentSkipListSet<>(JOIN_ORDER);
+            q.add(w);
+            byUser.computeIfAbsent(userId, u -> ConcurrentHashMap.newKeySet()).add(w);
+            return q;
+        });
+        if (result[0] == w) waiting.incrementAndGet();
+        return result[0];
+    }
+
+    boolean leave(String userId, long waiterSeq) {
+        for (Waiter w : waitingFor(userId)) {
+            if (w.seq == waiterSeq && dequeue(w)) {
+                forget(w);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The user's entries, earliest first
+    List<Waiter> waitingFor(String userId) {
+        Set<Waiter> mine = byUser.get(userId);
+        if (mine == null) return Collections.emptyList();
+        List<Waiter> out = new ArrayList<>(mine);
+        out.sort(JOIN_ORDER);
+        return out;
+    }
+
+    // Waiters ahead of w in its own line
+    int position(Waiter w) {
+        ConcurrentSkipListSet<Waiter> q = queues.get(w.key);
+        return q == null ? 0 : q.headSet(w).size();
+    }
+
+    Offer offerFor(String userId) {
+        return offersByUser.get(userId);
+    }
+
+    // The user the car is held for, or null
+    String heldFor(String carId) {
+        Offer o = offersByCar.get(carId);
+        return o == null || o == DISPATCHING ? null : o.waiter.userId;
+    }
+
+    // Cars with an open offer to someone other than userId (to anyone when null)
+    List<Car> heldFrom(String userId) {
+        List<Car> out = new ArrayList<>();
+        for (Offer o : offersByCar.values()) {
+            if (o != DISPATCHING && !o.waiter.userId.equals(userId)) out.add(o.car);
+        }
+        return out;
+    }
+
+    // Whether the waitlist keeps userId off this car: it is offered (or being
+    // offered) to someone else, or eligible waiters want it and it hasn't been
+    // offered yet. A free car becomes visible (returned, added, reservation
+    // cancelled) before the caller dispatches it; in that window this
+    // dispatches it here, so a walk-in can't get ahead of the line and the
+    // next waiter, if that is userId, gets their offer at once.
+    boolean keepsOff(Car car, String userId) {
+        String carId = car.getCarId();
+        Offer o = offersByCar.get(carId);
+        if (o == null) {
+            if (queues.isEmpty()) return false; // nobody waiting for anything; the usual case
+            String carKey = carKey(carId), modelKey = modelKey(car.getBrand(), car.getModel());
+            if (!hasEligible(carKey, modelKey)) return false;
+            dispatch(car);
+            o = offersByCar.get(carId);
+            if (o == null) return hasEligible(carKey, modelKey) && offerable.test(car);
+        }
+        return o == DISPATCHING || !o.waiter.userId.equals(userId);
+    }
+
+    boolean decline(String userId, String carId) {
+        Offer o = offersByCar.get(carId);
+        if (o == null || o == DISPATCHING || !o.waiter.userId.equals(userId) || !close(o, Change.DECLINED)) return false;
+        dispatch(o.car);
+        return true;
+    }
+
+    int waitingCount() { return waiting.get(); }
+
+    int offerCount() { return offersByUser.size(); }
+
+    // ---- fleet hooks (RentalService) ----
+
+    // The car was rented. By its offer holder: the offer is claimed. By someone
+    // else who got in just as the offer was made: the holder goes back to
+    // their old place in line.
+    // While the car is DISPATCHING there is no offer yet; dispatch checks the
+    // car again once its offer is out and withdraws it then (see stale()).
+    void rented(Car car, String userId) {
+        Offer o = offersByCar.get(car.getCarId());
+        if (o == null || o == DISPATCHING) return;
+        if (o.waiter.userId.equals(userId)) {
+            if (close(o, Change.CLAIMED)) dropSatisfied(userId, car);
+        } else {
+            withdraw(o);
+        }
+    }
+
+    // The car left the fleet; its offer lapses and its own line is dropped
+    void removed(Car car) {
+        Offer o = offersByCar.get(car.getCarId());
+        if (o != null && o != DISPATCHING) close(o, Change.WITHDRAWN);
+        ConcurrentSkipListSet<Waiter> q = queues.remove(carKey(car.getCarId()));
+        if (q != null) {
+            for (Waiter w : q) forget(w);
+        }
+    }
+
+    // Offers the car to the next eligible waiter, if anyone wants it. Safe to
+    // call from any thread at any time; returns the offer made, or null.
+    Offer dispatch(Car car) {
+        String carId = car.getCarId();
+        String carKey = carKey(carId), modelKey = modelKey(car.getBrand(), car.getModel());
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                if (!hasEligible(carKey, modelKey) || !offerable.test(car)) return null;
+                if (offersByCar.putIfAbsent(carId, DISPATCHING) != null) return null; // someone else has it
+                Offer made = null;
+                try {
+                    Waiter w;
+                    while (made == null && (w = take(carKey, modelKey)) != null) {
+                        Offer o = new Offer(w, car, System.currentTimeMillis() + CLAIM_MILLIS);
+                        if (offersByUser.putIfAbsent(w.userId, o) != null) {
+                            if (!enqueue(w)) waiting.decrementAndGet(); // got an offer elsewhere meanwhile; keeps its place
+                            continue;
+                        }
+                        if (!offerable.test(car)) { // rented or reserved under us
+                            offersByUser.remove(w.userId, o);
+                            if (!enqueue(w)) waiting.decrementAndGet();
+                            return null;
+                        }
+                        waiting.decrementAndGet();
+                        byUserRemove(w);
+                        o.expiry = timer.schedule(() -> expire(o), CLAIM_MILLIS, TimeUnit.MILLISECONDS);
+                        offersByCar.replace(carId, DISPATCHING, o);
+                        made = o;
+                    }
+                } finally {
+                    if (made == null) offersByCar.remove(carId, DISPATCHING);
+                }
+                if (made != null) {
+                    notify(made, Change.OFFERED);
+                    if (!stale(made)) return made;
+                    withdraw(made);
+                    return null;
+                }
+                // A waiter may have joined after take() found nobody; look once more
+            }
+        } finally {
+            Metrics.WAITLIST_DISPATCH.record(start);
+        }
+    }
+
+    // ---- internals ----
+
+    // A walk-in rented (or a reservation took) the car between the last check
+    // and the offer going out; rented() saw no offer then and left it to us.
+    // The holder's own rent can't be the cause: it waits for the offer.
+    private boolean stale(Offer o) {
+        return !offerable.test(o.car) && !o.waiter.userId.equals(o.car.getCurrentRenterId());
+    }
+
+    // Ends an offer someone else took the car from; the holder goes back to
+    // their old place in line
+    private void withdraw(Offer o) {
+        if (close(o, Change.WITHDRAWN) && enqueue(o.waiter)) waiting.incrementAndGet();
+    }
+
+    private void expire(Offer o) {
+        if (close(o, Change.EXPIRED)) dispatch(o.car);
+    }
+
+    // Ends an open offer; false if it had already ended
+    private boolean close(Offer o, Change change) {
+        if (!offersByCar.remove(o.car.getCarId(), o)) return false;
+        offersByUser.remove(o.waiter.userId, o);
+        ScheduledFuture<?> f = o.expiry;
+        if (f != null && change != Change.EXPIRED) f.cancel(false);
+        notify(o, change);
+        return true;
+    }
+
+    private void notify(Offer o, Change change) {
+        for (Listener l : listeners) l.offerChanged(o, change);
+    }
+
+    // Earliest waiter for the car or its model whose owner has no open offer,
+    // removed from its line; null if there is none
+    private Waiter take(String carKey, String modelKey) {
+        while (true) {
+            Waiter a = firstEligible(queues.get(carKey)), b = firstEligible(queues.get(modelKey));
+            Waiter w = a == null ? b : b == null ? a : a.seq < b.seq ? a : b;
+            if (w == null) return null;
+            if (dequeue(w)) return w; // else another dispatcher took it; look again
+        }
+    }
+
+    private boolean hasEligible(String carKey, String modelKey) {
+        return firstEligible(queues.get(carKey)) != null || firstEligible(queues.get(modelKey)) != null;
+    }
+
+    private Waiter firstEligible(ConcurrentSkipListSet<Waiter> q) {
+        if (q == null) return null;
+        for (Waiter w : q) {
+            if (!offersByUser.containsKey(w.userId)) return w;
+        }
+        return null;
+    }
+
+    // Puts a waiter taken for an offer back in its old place. A customer is in
+    // a line at most once: if they joined it again while w was out, w (the
+    // earlier place) replaces that entry. Returns whether the line grew.
+    private boolean enqueue(Waiter w) {
+        boolean[] grew = {true};
+        queues.compute(w.key, (k, q) -> {
+            ConcurrentSkipListSet<Waiter> line = q != null ? q : new ConcurrentSkipListSet<>(JOIN_ORDER);
+            byUser.compute(w.userId, (u, mine) -> {
+                if (mine == null) mine = ConcurrentHashMap.newKeySet();
+                for (Waiter other : mine) {
+                    if (other == w || !other.key.equals(k)) continue;
+                    grew[0] = false;
+                    if (!line.remove(other)) return mine; // being offered right now; that entry stands
+                    mine.remove(other);
+                }
+                line.add(w);
+                mine.add(w);
+                return mine;
+            });
+            return line.isEmpty() ? null : line;
+        });
+        return grew[0];
+    }
+
+    // Takes w out of its line (dropping the line if that emptied it); false if already gone
+    private boolean dequeue(Waiter w) {
+        ConcurrentSkipListSet<Waiter> q = queues.get(w.key);
+        if (q == null || !q.remove(w)) return false;
+        queues.computeIfPresent(w.key, (k, current) -> current.isEmpty() ? null : current);
+        return true;
+    }
+
+    private void forget(Waiter w) {
+        waiting.decrementAndGet();
+        byUserRemove(w);
+    }
+
+    private void byUserRemove(Waiter w) {
+        byUser.computeIfPresent(w.userId, (u, mine) -> {
+            mine.remove(w);
+            return mine.isEmpty() ? null : mine;
+        });
+    }
+
+    // Once a customer has the car, their other entries for it or its model are done
+    private void dropSatisfied(String userId, Car car) {
+        String carKey = carKey(car.getCarId()), modelKey = modelKey(car.getBrand(), car.getModel());
+        for (Waiter w : waitingFor(userId)) {
+            if ((w.key.equals(carKey) || w.key.equals(modelKey)) && dequeue(w)) forget(w);
+        }
+    }
+
+    static String carKey(String carId) {
+        return "car:" + carId;
+    }
+
+    static String modelKey(String brand, String model) {
+        return "model:" + FleetSearch.normalize(brand) + "|" + FleetSearch.normalize(model);
+    }
+}